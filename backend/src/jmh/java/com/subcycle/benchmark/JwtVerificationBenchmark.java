@@ -0,0 +1,90 @@
+package com.subcycle.benchmark;
+
+import com.subcycle.config.JwtProperties;
+import com.subcycle.security.JwtClaims;
+import com.subcycle.security.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每個請求的 JWT 驗證：原本的作法與 JwtUtil.verify 的比較
+ * 原本 JwtAuthenticationFilter 先 extractUsername，再 validateToken（extractUsername + isTokenExpired），
+ * 每次都重建密鑰與 JwtParser，共驗證三次簽名；現在以啟動時建立的 parser 驗證一次。
+ * 執行：mvn -Pbenchmarks compile exec:exec -Djmh.args="JwtVerification -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String EMAIL = "bench@example.com";
+
+    private JwtProperties properties;
+    private JwtUtil jwtUtil;
+    private UserDetails userDetails;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        properties = new JwtProperties();
+        jwtUtil = new JwtUtil(properties);
+        userDetails = User.withUsername(EMAIL).password("x").authorities(List.of()).build();
+        token = jwtUtil.generateToken(1L, EMAIL, "USER", 0, "session");
+        if (!legacy() || !current()) {
+            throw new IllegalStateException("token 驗證失敗");
+        }
+    }
+
+    /**
+     * 原本的流程：三次解析，每次重建密鑰與 parser
+     */
+    @Benchmark
+    public boolean legacy() {
+        String username = legacyClaims(token).getSubject();
+        if (username == null) {
+            return false;
+        }
+        String subject = legacyClaims(token).getSubject();
+        Date expiration = legacyClaims(token).getExpiration();
+        return subject.equals(userDetails.getUsername()) && !expiration.before(new Date());
+    }
+
+    /**
+     * 目前的流程：JwtUtil.verify 解析一次，再檢查已解析的 claims
+     */
+    @Benchmark
+    public boolean current() {
+        JwtClaims claims = jwtUtil.verify(token);
+        return jwtUtil.validateToken(claims, userDetails);
+    }
+
+    private Claims legacyClaims(String jwt) {
+        SecretKey key = Keys.hmacShaKeyFor(properties.getSecret().getBytes());
+        return Jwts.parser()
+                .verifyWith(key)
+                .build()
+                .parseSignedClaims(jwt)
+                .getPayload();
+    }
+}
@@ -0,0 +1,92 @@
+package com.subcycle.benchmark;
+
+import com.subcycle.entity.BillingCycle;
+import com.subcycle.entity.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 月均支出加總：原本的 BigDecimal 串接與 Money（long 最小單位）的比較
+ * 兩者都從訂閱的 BigDecimal 價格開始，與 DashboardService 實際的輸入相同；
+ * 執行：mvn -Pbenchmarks compile exec:exec -Djmh.args="MoneyAggregation -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyAggregationBenchmark {
+
+    private static final String CURRENCY = "USD";
+
+    @Param({"20", "500"})
+    private int subscriptions;
+
+    private BigDecimal[] prices;
+    private BillingCycle[] cycles;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        BillingCycle[] values = BillingCycle.values();
+        prices = new BigDecimal[subscriptions];
+        cycles = new BillingCycle[subscriptions];
+        for (int i = 0; i < subscriptions; i++) {
+            prices[i] = BigDecimal.valueOf(random.nextLong(100, 500_000), 2);
+            cycles[i] = values[random.nextInt(values.length)];
+        }
+        BigDecimal expected = bigDecimal();
+        BigDecimal actual = money();
+        if (expected.compareTo(actual) != 0) {
+            throw new IllegalStateException("捨入結果不一致: " + expected + " != " + actual);
+        }
+    }
+
+    /**
+     * 原本的 getMonthlyAmount 與 BigDecimal::add 加總，最後 setScale(2, HALF_UP)
+     */
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < subscriptions; i++) {
+            BigDecimal price = prices[i];
+            BigDecimal monthly = switch (cycles[i]) {
+                case DAILY -> price.multiply(BigDecimal.valueOf(30));
+                case WEEKLY -> price.multiply(BigDecimal.valueOf(4.33));
+                case MONTHLY -> price;
+                case QUARTERLY -> price.divide(BigDecimal.valueOf(3), 2, RoundingMode.HALF_UP);
+                case YEARLY -> price.divide(BigDecimal.valueOf(12), 2, RoundingMode.HALF_UP);
+            };
+            total = total.add(monthly);
+        }
+        return total.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * DashboardService.calculateMonthlyAverage 的作法：以 Money 累加，最後才轉回 BigDecimal
+     */
+    @Benchmark
+    public BigDecimal money() {
+        Money total = Money.zero(CURRENCY);
+        Money precise = total.withScale(total.getScale() + 2);
+        for (int i = 0; i < subscriptions; i++) {
+            precise = precise.plus(cycles[i].toMonthlyAmount(Money.of(prices[i], CURRENCY)));
+        }
+        return precise.withScale(total.getScale()).toBigDecimal();
+    }
+}
@@ -4,6 +4,7 @@ import com.subcycle.filter.RateLimitFilter;
 import com.subcycle.security.JwtAuthenticationFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -13,6 +14,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
@@ -87,6 +89,8 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 // 公開端點：不需要認證
                 .requestMatchers("/api/auth/**").permitAll()
+                // 錯誤頁面：保留原本的狀態碼（例如權限不足的 403），不被轉成 401
+                .requestMatchers("/error").permitAll()
                 // Swagger UI 公開訪問
                 .requestMatchers(
                     "/swagger-ui/**",
@@ -101,6 +105,10 @@ public class SecurityConfig {
                 // 所有其他請求都需要認證
                 .anyRequest().authenticated()
             )
+            // 未認證（token 無效、已撤銷或用戶已刪除）時回傳 401，前端據此導回登入頁
+            .exceptionHandling(exceptions -> exceptions
+                .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED))
+            )
             .sessionManagement(session -> session
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
             )
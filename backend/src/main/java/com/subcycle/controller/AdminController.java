@@ -8,10 +8,19 @@ import com.subcycle.dto.UserResponse;
 import com.subcycle.entity.User;
 import com.subcycle.repository.CategoryRepository;
 import com.subcycle.repository.EmailVerificationTokenRepository;
+import com.subcycle.repository.PaymentLedgerRepository;
 import com.subcycle.repository.RefreshTokenRepository;
 import com.subcycle.repository.SubscriptionRepository;
 import com.subcycle.repository.UserRepository;
+import com.subcycle.security.AccessTokenRevocationService;
+import com.subcycle.security.CurrentUser;
+import com.subcycle.security.TokenVersionRegistry;
 import com.subcycle.service.CategoryService;
+import com.subcycle.service.DashboardStatisticsCache;
+import com.subcycle.service.EmailOutboxService;
+import com.subcycle.service.ExchangeRateService;
+import com.subcycle.service.PaymentLedgerService;
+import com.subcycle.service.TokenPurgeService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.transaction.Transactional;
@@ -25,7 +34,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
@@ -50,6 +58,18 @@ public class AdminController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ExchangeRateService exchangeRateService;
+
+    @Autowired
+    private PaymentLedgerService paymentLedgerService;
+
+    @Autowired
+    private PaymentLedgerRepository paymentLedgerRepository;
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
@@ -69,6 +89,18 @@ public class AdminController {
     @Autowired
     private CategoryService categoryService;
 
+    @Autowired
+    private DashboardStatisticsCache dashboardStatisticsCache;
+
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Autowired
+    private AccessTokenRevocationService accessTokenRevocationService;
+
+    @Autowired
+    private TokenPurgeService tokenPurgeService;
+
     /**
      * 建立新用戶
      */
@@ -103,6 +135,7 @@ public class AdminController {
                 user.getName(),
                 user.getCurrency(),
                 user.getNotificationDays(),
+                user.getReminderDigest(),
                 user.getRole(),
                 user.getIsActive(),
                 user.getEmailVerified(),
@@ -143,6 +176,7 @@ public class AdminController {
                 user.getName(),
                 user.getCurrency(),
                 user.getNotificationDays(),
+                user.getReminderDigest(),
                 user.getRole(),
                 user.getIsActive(),
                 user.getEmailVerified(),
@@ -171,7 +205,7 @@ public class AdminController {
     public ResponseEntity<Map<String, Object>> updateUser(
             @PathVariable @NonNull Long id,
             @Valid @RequestBody UpdateUserRequest request,
-            @AuthenticationPrincipal User admin
+            @CurrentUser User admin
     ) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "用戶不存在"));
@@ -181,6 +215,9 @@ public class AdminController {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "無法修改自己的角色");
         }
 
+        // 角色或 Email 變更時，既有 token 的聲明已過時
+        boolean revokeTokens = !request.getRole().equals(user.getRole()) || !user.getEmail().equals(request.getEmail());
+
         // 檢查 Email 是否已被其他用戶使用
         if (!user.getEmail().equals(request.getEmail())) {
             if (userRepository.existsByEmail(request.getEmail())) {
@@ -193,7 +230,11 @@ public class AdminController {
         user.setRole(request.getRole());
         user.setUpdatedAt(LocalDateTime.now());
 
-        userRepository.save(user);
+        if (revokeTokens) {
+            tokenVersionRegistry.saveAndRevokeTokens(user);
+        } else {
+            userRepository.save(user);
+        }
 
         return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -210,7 +251,7 @@ public class AdminController {
     public ResponseEntity<Map<String, Object>> updateUserStatus(
             @PathVariable @NonNull Long id,
             @Valid @RequestBody UpdateUserStatusRequest request,
-            @AuthenticationPrincipal User admin
+            @CurrentUser User admin
     ) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "用戶不存在"));
@@ -223,7 +264,12 @@ public class AdminController {
         user.setIsActive(request.getIsActive());
         user.setUpdatedAt(LocalDateTime.now());
 
-        userRepository.save(user);
+        // 停用時撤銷既有 token
+        if (Boolean.FALSE.equals(request.getIsActive())) {
+            tokenVersionRegistry.saveAndRevokeTokens(user);
+        } else {
+            userRepository.save(user);
+        }
 
         String action = request.getIsActive() ? "啟用" : "停用";
         return ResponseEntity.ok(Map.of(
@@ -238,10 +284,11 @@ public class AdminController {
     @Operation(summary = "重置用戶密碼", description = "管理者為用戶重置密碼")
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping("/users/{id}/reset-password")
+    @Transactional
     public ResponseEntity<Map<String, Object>> resetUserPassword(
             @PathVariable @NonNull Long id,
             @Valid @RequestBody ResetUserPasswordRequest request,
-            @AuthenticationPrincipal User admin
+            @CurrentUser User admin
     ) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "用戶不存在"));
@@ -249,7 +296,9 @@ public class AdminController {
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         user.setUpdatedAt(LocalDateTime.now());
 
-        userRepository.save(user);
+        tokenVersionRegistry.saveAndRevokeTokens(user);
+        // 所有裝置都需以新密碼重新登入
+        refreshTokenRepository.deleteByUser(user);
 
         return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -266,7 +315,7 @@ public class AdminController {
     @Transactional
     public ResponseEntity<Map<String, Object>> deleteUser(
             @PathVariable @NonNull Long id,
-            @AuthenticationPrincipal User admin
+            @CurrentUser User admin
     ) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "用戶不存在"));
@@ -278,9 +327,12 @@ public class AdminController {
 
         refreshTokenRepository.deleteByUser(user);
         emailVerificationTokenRepository.deleteByUser(user);
+        paymentLedgerRepository.deleteByUserId(user.getId());
         subscriptionRepository.deleteByUser(user);
         categoryRepository.deleteByUser(user);
         userRepository.delete(user);
+        tokenVersionRegistry.revokeDeleted(user.getId());
+        dashboardStatisticsCache.invalidate(user.getId());
 
         return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -288,4 +340,67 @@ public class AdminController {
         ));
     }
 
+    /**
+     * 儀表板快取統計
+     */
+    @Operation(summary = "儀表板快取統計", description = "查看儀表板統計快取的命中、未命中與淘汰次數")
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/cache/dashboard")
+    public ResponseEntity<Map<String, Object>> getDashboardCacheStats() {
+        return ResponseEntity.ok(dashboardStatisticsCache.getStats());
+    }
+
+    /**
+     * 郵件寄送統計
+     */
+    @Operation(summary = "郵件寄送統計", description = "查看 email_outbox 各狀態的佇列深度、寄送、重試、放棄次數、限速等待時間與寄送延遲百分位數")
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/email-outbox/stats")
+    public ResponseEntity<Map<String, Object>> getEmailOutboxStats() {
+        return ResponseEntity.ok(emailOutboxService.getStats());
+    }
+
+    /**
+     * Access token 撤銷統計
+     */
+    @Operation(summary = "Token 撤銷統計", description = "查看撤銷清單 Bloom filter 的大小、檢查次數、命中與確認撤銷次數")
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/token-revocations/stats")
+    public ResponseEntity<Map<String, Object>> getTokenRevocationStats() {
+        return ResponseEntity.ok(accessTokenRevocationService.getStats());
+    }
+
+    /**
+     * 過期 token 清除統計
+     */
+    @Operation(summary = "Token 清除統計", description = "查看上次清除過期 refresh token 與 Email 驗證 token 的筆數與耗時")
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/token-purge/stats")
+    public ResponseEntity<Map<String, Object>> getTokenPurgeStats() {
+        return ResponseEntity.ok(tokenPurgeService.getLastRun());
+    }
+
+    /**
+     * 重新載入匯率
+     */
+    @Operation(summary = "重新載入匯率", description = "從 exchange_rates 表與匯率檔重新載入匯率快照")
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/exchange-rates/refresh")
+    public ResponseEntity<ExchangeRateService.Snapshot> refreshExchangeRates() {
+        return ResponseEntity.ok(exchangeRateService.refresh());
+    }
+
+    /**
+     * 回填扣款紀錄
+     */
+    @Operation(summary = "回填扣款紀錄", description = "依既有訂閱資料補齊 payment_ledger 中尚未記錄的過去扣款")
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/ledger/backfill")
+    public ResponseEntity<Map<String, Object>> backfillPaymentLedger() {
+        int inserted = paymentLedgerService.backfill();
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "inserted", inserted
+        ));
+    }
 }
@@ -5,12 +5,13 @@ import com.subcycle.dto.LoginRequest;
 import com.subcycle.dto.RefreshTokenRequest;
 import com.subcycle.dto.RegisterRequest;
 import com.subcycle.entity.User;
+import com.subcycle.security.CurrentUser;
 import com.subcycle.service.AuthService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
@@ -82,10 +83,10 @@ public class AuthController {
     /**
      * 登出
      */
-    @Operation(summary = "登出", description = "撤銷使用者的 Refresh Token")
+    @Operation(summary = "登出", description = "撤銷使用者的 Refresh Token 與目前的 Access Token")
     @PostMapping("/logout")
-    public ResponseEntity<Map<String, Object>> logout(@AuthenticationPrincipal User user) {
-        return ResponseEntity.ok(authService.logout(user));
+    public ResponseEntity<Map<String, Object>> logout(@CurrentUser User user, Authentication authentication) {
+        return ResponseEntity.ok(authService.logout(user, authentication != null ? authentication.getPrincipal() : null));
     }
 
     /**
@@ -3,11 +3,11 @@ package com.subcycle.controller;
 import com.subcycle.dto.CategoryRequest;
 import com.subcycle.dto.CategoryResponse;
 import com.subcycle.entity.User;
+import com.subcycle.security.CurrentUser;
 import com.subcycle.service.CategoryService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -24,13 +24,13 @@ public class CategoryController {
     private CategoryService categoryService;
 
     @GetMapping
-    public ResponseEntity<List<CategoryResponse>> getCategories(@AuthenticationPrincipal User user) {
+    public ResponseEntity<List<CategoryResponse>> getCategories(@CurrentUser User user) {
         return ResponseEntity.ok(categoryService.getCategories(user));
     }
 
     @PostMapping
     public ResponseEntity<CategoryResponse> createCategory(
-            @AuthenticationPrincipal User user,
+            @CurrentUser User user,
             @Valid @RequestBody CategoryRequest request
     ) {
         return ResponseEntity.ok(categoryService.createCategory(user, request));
@@ -38,7 +38,7 @@ public class CategoryController {
 
     @PutMapping("/{id}")
     public ResponseEntity<CategoryResponse> updateCategory(
-            @AuthenticationPrincipal User user,
+            @CurrentUser User user,
             @PathVariable Long id,
             @Valid @RequestBody CategoryRequest request
     ) {
@@ -47,7 +47,7 @@ public class CategoryController {
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteCategory(
-            @AuthenticationPrincipal User user,
+            @CurrentUser User user,
             @PathVariable Long id
     ) {
         categoryService.deleteCategory(user, id);
@@ -1,18 +1,24 @@
 package com.subcycle.controller;
 
 import com.subcycle.dto.DashboardStatistics;
+import com.subcycle.dto.SpendingForecast;
+import com.subcycle.dto.TopSubscriptionMetric;
 import com.subcycle.entity.User;
+import com.subcycle.security.CurrentUser;
 import com.subcycle.service.DashboardService;
+import com.subcycle.service.ForecastService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 /**
  * 儀表板統計 API
  */
@@ -25,10 +31,32 @@ public class DashboardController {
     @Autowired
     private DashboardService dashboardService;
 
+    @Autowired
+    private ForecastService forecastService;
+
     @Operation(summary = "獲取儀表板統計數據", description = "獲取包含環比、本月進度、Top 5等完整統計數據")
     @GetMapping("/statistics")
-    public ResponseEntity<DashboardStatistics> getStatistics(@AuthenticationPrincipal User user) {
+    public ResponseEntity<DashboardStatistics> getStatistics(@CurrentUser User user) {
         DashboardStatistics statistics = dashboardService.getDashboardStatistics(user);
         return ResponseEntity.ok(statistics);
     }
+
+    @Operation(summary = "獲取排名最高的訂閱", description = "依本月花費、年化花費或最近扣款日排名，返回前 N 筆訂閱")
+    @GetMapping("/top")
+    public ResponseEntity<List<DashboardStatistics.TopSubscription>> getTopSubscriptions(
+            @CurrentUser User user,
+            @RequestParam(defaultValue = "5") int limit,
+            @RequestParam(defaultValue = "MONTHLY_COST") TopSubscriptionMetric metric
+    ) {
+        return ResponseEntity.ok(dashboardService.getTopSubscriptions(user, limit, metric));
+    }
+
+    @Operation(summary = "獲取多月份支出預測", description = "從本月起預測 N 個月（最多 60 個月）的每月與各類別支出")
+    @GetMapping("/forecast")
+    public ResponseEntity<SpendingForecast> getForecast(
+            @CurrentUser User user,
+            @RequestParam(defaultValue = "12") int months
+    ) {
+        return ResponseEntity.ok(forecastService.getForecast(user, months));
+    }
 }
@@ -73,11 +73,11 @@ public class ExportController {
         response.setId(subscription.getId());
         response.setName(subscription.getName());
         response.setPrice(subscription.getPrice());
-        response.setBillingCycle(subscription.getBillingCycle());
+        response.setBillingCycle(subscription.getBillingCycle() != null ? subscription.getBillingCycle().getCode() : null);
         response.setNextPaymentDate(subscription.getNextPaymentDate());
         response.setStartDate(subscription.getStartDate());
         response.setEndDate(subscription.getEndDate());
-        response.setStatus(subscription.getStatus());
+        response.setStatus(subscription.getStatus() != null ? subscription.getStatus().getCode() : null);
 
         if (subscription.getCategory() != null) {
             com.subcycle.dto.CategoryResponse categoryResponse = new com.subcycle.dto.CategoryResponse();
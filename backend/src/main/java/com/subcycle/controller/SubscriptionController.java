@@ -1,18 +1,22 @@
 package com.subcycle.controller;
 
+import com.subcycle.dto.CalendarOccurrences;
 import com.subcycle.dto.SubscriptionRequest;
 import com.subcycle.dto.SubscriptionResponse;
 import com.subcycle.dto.UpdateNotificationSettingsRequest;
 import com.subcycle.entity.User;
+import com.subcycle.security.CurrentUser;
+import com.subcycle.service.CalendarService;
 import com.subcycle.service.SubscriptionService;
 import com.subcycle.service.SubscriptionScheduleService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import io.swagger.v3.oas.annotations.Operation;
@@ -31,8 +35,11 @@ public class SubscriptionController {
     @Autowired
     private SubscriptionScheduleService subscriptionScheduleService;
 
+    @Autowired
+    private CalendarService calendarService;
+
     @GetMapping
-    public ResponseEntity<List<SubscriptionResponse>> list(@AuthenticationPrincipal User user) {
+    public ResponseEntity<List<SubscriptionResponse>> list(@CurrentUser User user) {
         return ResponseEntity.ok(subscriptionService.getSubscriptions(user));
     }
 
@@ -40,7 +47,7 @@ public class SubscriptionController {
                description = "支援關鍵字搜尋、狀態篩選、類別篩選、計費週期篩選，並提供分頁和排序功能")
     @GetMapping("/search")
     public ResponseEntity<Page<SubscriptionResponse>> search(
-            @AuthenticationPrincipal User user,
+            @CurrentUser User user,
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String status,
             @RequestParam(required = false) Long categoryId,
@@ -54,9 +61,20 @@ public class SubscriptionController {
                 user, search, status, categoryId, billingCycle, page, size, sortBy, sortDirection));
     }
 
+    @Operation(summary = "行事曆扣款事件",
+               description = "展開 [from, to] 區間內所有扣款日並依日期分組，附每日合計（區間最多 " + CalendarService.MAX_RANGE_DAYS + " 天）")
+    @GetMapping("/occurrences")
+    public ResponseEntity<CalendarOccurrences> occurrences(
+            @CurrentUser User user,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return ResponseEntity.ok(calendarService.getOccurrences(user, from, to));
+    }
+
     @PostMapping
     public ResponseEntity<SubscriptionResponse> create(
-            @AuthenticationPrincipal User user,
+            @CurrentUser User user,
             @Valid @RequestBody SubscriptionRequest request
     ) {
         return ResponseEntity.ok(subscriptionService.createSubscription(user, request));
@@ -64,7 +82,7 @@ public class SubscriptionController {
 
     @PutMapping("/{id}")
     public ResponseEntity<SubscriptionResponse> update(
-            @AuthenticationPrincipal User user,
+            @CurrentUser User user,
             @PathVariable Long id,
             @Valid @RequestBody SubscriptionRequest request
     ) {
@@ -73,7 +91,7 @@ public class SubscriptionController {
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(
-            @AuthenticationPrincipal User user,
+            @CurrentUser User user,
             @PathVariable Long id
     ) {
         subscriptionService.deleteSubscription(user, id);
@@ -83,16 +101,16 @@ public class SubscriptionController {
     @Operation(summary = "手動推進過期的下次扣款日", description = "將已過期的 nextPaymentDate 依週期往後推至最近未來日期")
     @PostMapping("/rollover")
     public ResponseEntity<Map<String, Integer>> rollOverExpired(
-            @AuthenticationPrincipal User user
+            @CurrentUser User user
     ) {
-        int updated = subscriptionScheduleService.rollOverExpiredForUser(user);
+        int updated = subscriptionScheduleService.rollOverExpiredForUser(user.getId());
         return ResponseEntity.ok(Map.of("updated", updated));
     }
 
     @Operation(summary = "更新訂閱通知開關", description = "批次更新使用者所有訂閱的通知開關")
     @PutMapping("/notifications")
     public ResponseEntity<Map<String, Object>> updateNotificationSettings(
-            @AuthenticationPrincipal User user,
+            @CurrentUser User user,
             @Valid @RequestBody UpdateNotificationSettingsRequest request
     ) {
         int updated = subscriptionService.updateNotificationEnabled(user, request.getEnabled());
@@ -4,11 +4,11 @@ import com.subcycle.dto.ChangePasswordRequest;
 import com.subcycle.dto.UpdateProfileRequest;
 import com.subcycle.dto.UserResponse;
 import com.subcycle.entity.User;
+import com.subcycle.security.CurrentUser;
 import com.subcycle.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
@@ -22,14 +22,14 @@ public class UserController {
 
     @GetMapping("/profile")
     public ResponseEntity<UserResponse> getProfile(
-            @AuthenticationPrincipal User user
+            @CurrentUser User user
     ) {
         return ResponseEntity.ok(userService.getUserProfile(user));
     }
 
     @PutMapping("/profile")
     public ResponseEntity<UserResponse> updateProfile(
-            @AuthenticationPrincipal User user,
+            @CurrentUser User user,
             @Valid @RequestBody UpdateProfileRequest request
     ) {
         return ResponseEntity.ok(userService.updateProfile(user, request));
@@ -37,7 +37,7 @@ public class UserController {
 
     @PutMapping("/password")
     public ResponseEntity<Map<String, String>> changePassword(
-            @AuthenticationPrincipal User user,
+            @CurrentUser User user,
             @Valid @RequestBody ChangePasswordRequest request
     ) {
         userService.changePassword(user, request);
@@ -0,0 +1,46 @@
+package com.subcycle.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 行事曆扣款事件 DTO（依日期分組）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CalendarOccurrences {
+
+    private String from;                 // 起始日（yyyy-MM-dd）
+    private String to;                   // 結束日（yyyy-MM-dd）
+    private String currency;             // 合計金額所用幣別（用戶偏好幣別）
+    private BigDecimal total;            // 區間總支出
+    private Integer paymentCount;        // 區間扣款次數
+    private List<DayOccurrences> days;   // 有扣款的日期，依日期排序
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DayOccurrences {
+        private String date;             // 扣款日（yyyy-MM-dd）
+        private BigDecimal total;        // 當日總支出（已換算）
+        private List<Charge> charges;    // 當日扣款明細
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Charge {
+        private Long subscriptionId;
+        private String name;
+        private BigDecimal amount;       // 原幣別金額
+        private String currency;
+        private String cycle;
+        private Long categoryId;
+        private String categoryColor;
+    }
+}
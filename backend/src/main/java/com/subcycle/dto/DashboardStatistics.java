@@ -34,6 +34,10 @@ public class DashboardStatistics {
     // Top 5 訂閱
     private List<TopSubscription> topSubscriptions;
 
+    // 多幣別（上方金額皆已換算為 currency）
+    private String currency;                          // 用戶偏好幣別
+    private List<CurrencySubtotal> currencySubtotals; // 各幣別小計
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -43,5 +47,19 @@ public class DashboardStatistics {
         private BigDecimal amount;
         private String cycle;
         private BigDecimal monthlyAmount; // 本月花費
+        private String currency;          // 訂閱幣別
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CurrencySubtotal {
+        private String currency;
+        private Integer subscriptionCount;
+        private BigDecimal monthlyAverage;             // 原幣別月均支出
+        private BigDecimal currentMonthTotal;          // 原幣別本月預計總支出
+        private BigDecimal exchangeRate;               // 換算匯率，查無匯率時為 null（以 1:1 計入）
+        private BigDecimal convertedMonthlyAverage;    // 換算後月均支出
+        private BigDecimal convertedCurrentMonthTotal; // 換算後本月預計總支出
     }
 }
@@ -0,0 +1,29 @@
+package com.subcycle.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 付款提醒候選 DTO
+ * 由 JPQL 建構式查詢直接產生，只包含提醒郵件需要的欄位，不載入訂閱與用戶實體
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentReminder {
+
+    private Long subscriptionId;
+    private Long userId;
+    private String email;                // 用戶郵件
+    private String userName;             // 用戶名稱
+    private Integer notificationDays;    // 用戶的提醒天數
+    private Boolean reminderDigest;      // 用戶是否合併提醒郵件
+    private String subscriptionName;     // 訂閱名稱
+    private LocalDate nextPaymentDate;   // 下次付款日期
+    private BigDecimal price;            // 金額
+    private String currency;             // 幣別
+}
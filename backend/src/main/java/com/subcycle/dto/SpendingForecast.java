@@ -0,0 +1,42 @@
+package com.subcycle.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 多月份支出預測 DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SpendingForecast {
+
+    private String startMonth;                  // 起始月份（yyyy-MM）
+    private Integer months;                     // 預測月數
+    private BigDecimal total;                   // 預測期間總支出
+    private List<MonthForecast> monthly;        // 每月預測
+    private List<CategoryAmount> categoryTotals; // 各類別預測期間合計
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MonthForecast {
+        private String month;                   // 月份（yyyy-MM）
+        private BigDecimal total;               // 該月預計總支出
+        private Integer paymentCount;           // 該月扣款次數
+        private List<CategoryAmount> categories; // 該月各類別支出
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CategoryAmount {
+        private Long categoryId;
+        private String categoryName;
+        private BigDecimal amount;
+    }
+}
@@ -0,0 +1,10 @@
+package com.subcycle.dto;
+
+/**
+ * Top 訂閱排名依據
+ */
+public enum TopSubscriptionMetric {
+    MONTHLY_COST,   // 本月花費
+    ANNUAL_COST,    // 年化花費
+    NEXT_CHARGE     // 最近扣款日
+}
@@ -13,4 +13,6 @@ public class UpdateProfileRequest {
     private String currency;
 
     private Integer notificationDays;
+
+    private Boolean reminderDigest;
 }
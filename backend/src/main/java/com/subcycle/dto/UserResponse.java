@@ -15,6 +15,7 @@ public class UserResponse {
     private String name;
     private String currency;
     private Integer notificationDays;
+    private Boolean reminderDigest;
     private String role;
     private Boolean isActive;
     private Boolean emailVerified;
@@ -0,0 +1,216 @@
+package com.subcycle.entity;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 計費週期與扣款日遞推引擎
+ *
+ * 以閉式運算直接跳到第 N 次扣款日，結果與逐次呼叫 plusDays / plusMonths 完全一致
+ * （包含月底日期被夾到較短月份後不再回復的行為，例如 1/31 → 2/28 → 3/28）。
+ */
+public enum BillingCycle {
+
+    DAILY("daily", "D", "每日", 1, 0, 3000, 1),
+    WEEKLY("weekly", "W", "每週", 7, 0, 433, 1),
+    MONTHLY("monthly", "M", "每月", 0, 1, 100, 1),
+    QUARTERLY("quarterly", "Q", "每季", 0, 3, 100, 3),
+    YEARLY("yearly", "Y", "每年", 0, 12, 100, 12);
+
+    /**
+     * 月底夾日的下限最多在 48 步內收斂（涵蓋至少一個非閏年的二月）
+     */
+    private static final int CLAMP_SCAN_LIMIT = 48;
+
+    private static final BillingCycle[] VALUES = values();
+
+    private final String code;
+    private final String dbCode;
+    private final String label;
+    private final int stepDays;
+    private final int stepMonths;
+    private final int monthlyHundredths;
+    private final int monthlyDivisor;
+
+    BillingCycle(String code, String dbCode, String label, int stepDays, int stepMonths,
+                 int monthlyHundredths, int monthlyDivisor) {
+        this.code = code;
+        this.dbCode = dbCode;
+        this.label = label;
+        this.stepDays = stepDays;
+        this.stepMonths = stepMonths;
+        this.monthlyHundredths = monthlyHundredths;
+        this.monthlyDivisor = monthlyDivisor;
+    }
+
+    /**
+     * API 使用的代碼（daily、weekly ...）
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * 資料庫儲存的單字元代碼
+     */
+    public String getDbCode() {
+        return dbCode;
+    }
+
+    /**
+     * 顯示名稱
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * 每步的天數（以月為單位的週期為 0）
+     */
+    public int getStepDays() {
+        return stepDays;
+    }
+
+    /**
+     * 每步的月數（以天為單位的週期為 0）
+     */
+    public int getStepMonths() {
+        return stepMonths;
+    }
+
+    /**
+     * 由 API 代碼轉換，無法辨識時返回 null
+     */
+    public static BillingCycle parse(String code) {
+        if (code != null) {
+            for (BillingCycle cycle : VALUES) {
+                if (cycle.code.equalsIgnoreCase(code)) {
+                    return cycle;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 未設定週期時與既有邏輯相同視為每月
+     */
+    public static BillingCycle orMonthly(BillingCycle cycle) {
+        return cycle != null ? cycle : MONTHLY;
+    }
+
+    /**
+     * 由資料庫代碼轉換，同時相容尚未遷移的舊資料（daily、weekly ...），無法辨識時返回 null
+     */
+    public static BillingCycle fromDbCode(String dbCode) {
+        if (dbCode == null || dbCode.isEmpty()) {
+            return null;
+        }
+        for (BillingCycle cycle : VALUES) {
+            if (cycle.dbCode.equals(dbCode)) {
+                return cycle;
+            }
+        }
+        return parse(dbCode);
+    }
+
+    /**
+     * 換算為月均金額，結果比原幣別多兩位小數（每週 ×4.33 不先捨入），由呼叫端加總後再捨入
+     * 季繳、年繳的除法則與原本相同，先捨入到幣別的小數位數
+     */
+    public Money toMonthlyAmount(Money price) {
+        return price.divide(monthlyDivisor).timesHundredths(monthlyHundredths);
+    }
+
+    /**
+     * 下一次扣款日
+     */
+    public LocalDate next(LocalDate date) {
+        return advance(date, 1);
+    }
+
+    /**
+     * 上一次扣款日
+     */
+    public LocalDate previous(LocalDate date) {
+        return advance(date, -1);
+    }
+
+    /**
+     * 從 anchor 連續前進（steps > 0）或後退（steps < 0）指定步數後的日期
+     */
+    public LocalDate advance(LocalDate anchor, long steps) {
+        if (steps == 0) {
+            return anchor;
+        }
+        if (stepDays > 0) {
+            return anchor.plusDays(Math.multiplyExact(steps, (long) stepDays));
+        }
+
+        long months = Math.multiplyExact(steps, (long) stepMonths);
+        int day = anchor.getDayOfMonth();
+        if (day <= 28 || Math.abs(steps) == 1) {
+            return anchor.plusMonths(months);
+        }
+
+        // 逐次 plusMonths 時，日期會被途經最短月份夾住，之後不再回復
+        YearMonth anchorMonth = YearMonth.from(anchor);
+        YearMonth targetMonth = anchorMonth.plusMonths(months);
+        long direction = Long.signum(steps);
+        long scan = Math.min(Math.abs(steps), CLAMP_SCAN_LIMIT);
+        for (long k = 1; k <= scan && day > 28; k++) {
+            int length = anchorMonth.plusMonths(direction * k * stepMonths).lengthOfMonth();
+            day = Math.min(day, length);
+        }
+        return targetMonth.atDay(Math.min(day, targetMonth.lengthOfMonth()));
+    }
+
+    /**
+     * 最小的 n >= 0，使 advance(anchor, n) 不早於 target
+     */
+    public long stepsOnOrAfter(LocalDate anchor, LocalDate target) {
+        if (!anchor.isBefore(target)) {
+            return 0;
+        }
+        if (stepDays > 0) {
+            return Math.ceilDiv(ChronoUnit.DAYS.between(anchor, target), stepDays);
+        }
+        long months = ChronoUnit.MONTHS.between(YearMonth.from(anchor), YearMonth.from(target));
+        long steps = Math.floorDiv(months, stepMonths);
+        return advance(anchor, steps).isBefore(target) ? steps + 1 : steps;
+    }
+
+    /**
+     * 最小的 n >= 0，使 advance(anchor, -n) 不晚於 target
+     */
+    public long stepsBackOnOrBefore(LocalDate anchor, LocalDate target) {
+        if (!anchor.isAfter(target)) {
+            return 0;
+        }
+        if (stepDays > 0) {
+            return Math.ceilDiv(ChronoUnit.DAYS.between(target, anchor), stepDays);
+        }
+        long months = ChronoUnit.MONTHS.between(YearMonth.from(target), YearMonth.from(anchor));
+        long steps = Math.floorDiv(months, stepMonths);
+        return advance(anchor, -steps).isAfter(target) ? steps + 1 : steps;
+    }
+
+    /**
+     * 第一個不早於 target 的扣款日
+     */
+    public LocalDate firstOnOrAfter(LocalDate anchor, LocalDate target) {
+        return advance(anchor, stepsOnOrAfter(anchor, target));
+    }
+
+    /**
+     * 從 anchor 開始（含）往後的扣款日中，落在 [from, to] 的次數
+     */
+    public long countBetween(LocalDate anchor, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            return 0;
+        }
+        long count = stepsOnOrAfter(anchor, to.plusDays(1)) - stepsOnOrAfter(anchor, from);
+        return Math.max(count, 0);
+    }
+}
@@ -0,0 +1,37 @@
+package com.subcycle.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 已刪除用戶實體類別
+ * 對應資料庫 deleted_users 表，刪除用戶時記錄，各節點定期載入後拒絕該用戶已簽發的 access token；
+ * 保留到最後一個 access token 過期為止，之後即可刪除
+ */
+@Entity
+@Table(name = "deleted_users",
+        indexes = {
+                @Index(name = "idx_deleted_users_expires_at", columnList = "expires_at")
+        })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeletedUser {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+
+    /**
+     * 刪除前簽發的 access token 最晚的過期時間
+     */
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,96 @@
+package com.subcycle.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 待寄送郵件實體類別
+ * 對應資料庫 email_outbox 表，呼叫端在自己的交易中寫入，由背景寄送工作取出、套用模板後寄出；
+ * 失敗時依指數退避重試，超過次數上限後標記為 DEAD 保留供查看
+ */
+@Entity
+@Table(name = "email_outbox",
+        indexes = @Index(name = "idx_email_outbox_status_next_attempt", columnList = "status, next_attempt_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailOutbox {
+
+    public enum Status {
+        PENDING,    // 等待寄送或等待重試
+        SENDING,    // 已被寄送工作取出，逾時未完成時可再被取出
+        SENT,
+        DEAD        // 超過重試次數或無法寄送
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String subject;
+
+    /**
+     * Thymeleaf 模板名稱（例如 email/subscription-renewal）
+     */
+    @Column(nullable = false, length = 100)
+    private String template;
+
+    /**
+     * 模板變數（JSON）
+     */
+    @Column(columnDefinition = "TEXT")
+    private String variables;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Status status;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    /**
+     * PENDING：下次可寄送的時間；SENDING：取出租約的到期時間
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * 預定寄送時間（寫入後不再變動），寄送延遲 = sent_at - scheduled_at
+     */
+    @Column(name = "scheduled_at")
+    private LocalDateTime scheduledAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (status == null) {
+            status = Status.PENDING;
+        }
+        if (attempts == null) {
+            attempts = 0;
+        }
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+        if (scheduledAt == null) {
+            scheduledAt = nextAttemptAt;
+        }
+    }
+}
@@ -8,7 +8,8 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "email_verification_tokens")
+@Table(name = "email_verification_tokens",
+        indexes = @Index(name = "idx_email_verification_tokens_expiry_date", columnList = "expiry_date"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,40 @@
+package com.subcycle.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 匯率實體類別
+ * 對應資料庫 exchange_rates 表，rate 表示 1 單位該幣別可兌換多少基準幣別
+ */
+@Entity
+@Table(name = "exchange_rates")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExchangeRate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 3)
+    private String currency;
+
+    @Column(nullable = false, precision = 18, scale = 8)
+    private BigDecimal rate;
+
+    @Column(name = "updated_at", columnDefinition = "TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,49 @@
+package com.subcycle.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 排程工作租約實體類別
+ * 對應資料庫 job_lock 表，多個節點同時觸發排程時，只有取得租約的節點執行；
+ * 執行中定期延長 locked_until，節點中斷後租約到期即可由其他節點接手
+ */
+@Entity
+@Table(name = "job_lock")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobLock {
+
+    @Id
+    @Column(name = "job_name", length = 100)
+    private String jobName;
+
+    /**
+     * 目前持有租約的節點
+     */
+    @Column(length = 128)
+    private String owner;
+
+    /**
+     * 目前執行的排程批次（例如日期）
+     */
+    @Column(name = "run_key", length = 64)
+    private String runKey;
+
+    /**
+     * 最後一個執行完成的排程批次，同一批次不會重複執行
+     */
+    @Column(name = "completed_key", length = 64)
+    private String completedKey;
+
+    @Column(name = "locked_until", columnDefinition = "DATETIME(3)")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "heartbeat_at", columnDefinition = "DATETIME(3)")
+    private LocalDateTime heartbeatAt;
+}
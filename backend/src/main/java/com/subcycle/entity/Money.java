@@ -0,0 +1,209 @@
+package com.subcycle.entity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 金額值物件
+ * 以 long 儲存最小單位（例如 TWD 的「分」），加減乘除不需建立 BigDecimal；
+ * 只有輸出到 JSON 或寫回資料庫時才轉回 BigDecimal。
+ * 小數位數依幣別決定，但至少為 2 位，與資料庫 price 欄位的精度一致；
+ * 所有捨入皆為 HALF_UP，與原本 setScale(2, RoundingMode.HALF_UP) 的結果相同。
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final String DEFAULT_CURRENCY = "TWD";
+
+    private static final int MIN_SCALE = 2;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+            1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L
+    };
+
+    private static final Map<String, Integer> SCALES = new ConcurrentHashMap<>();
+
+    private final long minorUnits;
+    private final int scale;
+    private final String currency;
+
+    private Money(long minorUnits, int scale, String currency) {
+        this.minorUnits = minorUnits;
+        this.scale = scale;
+        this.currency = currency;
+    }
+
+    /**
+     * 指定幣別的零元
+     */
+    public static Money zero(String currency) {
+        String code = currencyCode(currency);
+        return new Money(0, scaleOf(code), code);
+    }
+
+    /**
+     * 由最小單位建立
+     */
+    public static Money ofMinor(long minorUnits, String currency) {
+        String code = currencyCode(currency);
+        return new Money(minorUnits, scaleOf(code), code);
+    }
+
+    /**
+     * 由 BigDecimal 建立，超出幣別小數位數的部分以 HALF_UP 捨入；null 視為零
+     */
+    public static Money of(BigDecimal amount, String currency) {
+        String code = currencyCode(currency);
+        int scale = scaleOf(code);
+        if (amount == null) {
+            return new Money(0, scale, code);
+        }
+        return new Money(amount.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact(), scale, code);
+    }
+
+    /**
+     * 幣別的小數位數（至少 2 位，無法辨識的幣別視為 2 位）
+     */
+    public static int scaleOf(String currency) {
+        return SCALES.computeIfAbsent(currencyCode(currency), code -> {
+            try {
+                return Math.max(MIN_SCALE, Currency.getInstance(code).getDefaultFractionDigits());
+            } catch (IllegalArgumentException e) {
+                return MIN_SCALE;
+            }
+        });
+    }
+
+    /**
+     * 正規化幣別代碼（轉大寫，未設定時為 TWD）
+     */
+    public static String currencyCode(String currency) {
+        return currency == null || currency.isBlank() ? DEFAULT_CURRENCY : currency.trim().toUpperCase();
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public Money plus(Money other) {
+        checkCompatible(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), scale, currency);
+    }
+
+    public Money minus(Money other) {
+        checkCompatible(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), scale, currency);
+    }
+
+    /**
+     * 乘以整數（例如扣款次數），結果不需捨入
+     */
+    public Money times(long factor) {
+        return factor == 1 ? this : new Money(Math.multiplyExact(minorUnits, factor), scale, currency);
+    }
+
+    /**
+     * 除以整數，結果以 HALF_UP 捨入到目前的小數位數
+     */
+    public Money divide(long divisor) {
+        return divisor == 1 ? this : new Money(divideHalfUp(minorUnits, divisor), scale, currency);
+    }
+
+    /**
+     * 乘以 hundredths / 100，並保留兩位額外小數，結果不需捨入
+     * 用於 4.33 這類倍率，讓多筆加總後再一次捨入
+     */
+    public Money timesHundredths(long hundredths) {
+        return new Money(Math.multiplyExact(minorUnits, hundredths), scale + 2, currency);
+    }
+
+    /**
+     * 轉換到指定小數位數，縮減位數時以 HALF_UP 捨入
+     */
+    public Money withScale(int newScale) {
+        if (newScale == scale) {
+            return this;
+        }
+        if (newScale > scale) {
+            return new Money(Math.multiplyExact(minorUnits, POWERS_OF_TEN[newScale - scale]), newScale, currency);
+        }
+        return new Money(divideHalfUp(minorUnits, POWERS_OF_TEN[scale - newScale]), newScale, currency);
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    /**
+     * 佔 whole 的百分比，先以 HALF_UP 捨入到比例的小數第 4 位，
+     * 與 divide(whole, 4, HALF_UP).multiply(100) 的結果相同
+     */
+    public double percentOf(Money whole) {
+        checkCompatible(whole);
+        return divideHalfUp(Math.multiplyExact(minorUnits, 10_000L), whole.minorUnits) / 100.0;
+    }
+
+    /**
+     * 轉換為 BigDecimal（僅用於 JSON 輸出與資料庫欄位）
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+
+    /**
+     * 整數除法，以 HALF_UP（距離相同時遠離零）捨入
+     */
+    public static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder != 0 && Math.abs(remainder) >= Math.abs(divisor) - Math.abs(remainder)) {
+            quotient += Long.signum(dividend) * Long.signum(divisor);
+        }
+        return quotient;
+    }
+
+    private void checkCompatible(Money other) {
+        if (!currency.equals(other.currency) || scale != other.scale) {
+            throw new IllegalArgumentException("幣別或小數位數不一致: " + this + " / " + other);
+        }
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        checkCompatible(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money other)) {
+            return false;
+        }
+        return minorUnits == other.minorUnits && scale == other.scale && currency.equals(other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minorUnits, scale, currency);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency;
+    }
+}
@@ -0,0 +1,52 @@
+package com.subcycle.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 扣款紀錄實體類別
+ * 對應資料庫 payment_ledger 表，每筆已發生的扣款一列，金額與幣別為扣款當時的訂閱設定
+ */
+@Entity
+@Table(name = "payment_ledger",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_ledger_subscription_paid_on",
+                columnNames = {"subscription_id", "paid_on"}),
+        indexes = @Index(name = "idx_payment_ledger_user_paid_on", columnList = "user_id, paid_on"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentLedger {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "subscription_id", nullable = false)
+    private Long subscriptionId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "paid_on", nullable = false)
+    private LocalDate paidOn;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal amount;
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Column(name = "created_at", columnDefinition = "TIMESTAMP DEFAULT CURRENT_TIMESTAMP")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
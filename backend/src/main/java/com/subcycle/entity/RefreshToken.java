@@ -3,8 +3,19 @@ package com.subcycle.entity;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
+/**
+ * Refresh token 實體類別
+ * 只保存 token 的 SHA-256 摘要（固定 32 位元組，唯一索引），不保存原始 token；
+ * 每次登入建立一個 session（裝置），刷新時輪換為同一 session 的新 token，舊 token 標記為已撤銷並保留到過期，
+ * 以便偵測重複使用。
+ */
 @Entity
-@Table(name = "refresh_tokens")
+@Table(name = "refresh_tokens",
+        uniqueConstraints = @UniqueConstraint(name = "uk_refresh_tokens_token_hash", columnNames = "token_hash"),
+        indexes = {
+                @Index(name = "idx_refresh_tokens_session_id", columnList = "session_id"),
+                @Index(name = "idx_refresh_tokens_expires_at", columnList = "expires_at")
+        })
 public class RefreshToken {
 
     @Id
@@ -15,8 +26,17 @@ public class RefreshToken {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @Column(nullable = false, unique = true, length = 500)
-    private String token;
+    /**
+     * token 的 SHA-256 摘要
+     */
+    @Column(name = "token_hash", nullable = false, columnDefinition = "BINARY(32)")
+    private byte[] tokenHash;
+
+    /**
+     * 登入 session（裝置）ID，輪換後的 token 沿用同一個 ID
+     */
+    @Column(name = "session_id", nullable = false, length = 36)
+    private String sessionId;
 
     @Column(name = "expires_at", nullable = false)
     private LocalDateTime expiresAt;
@@ -27,6 +47,12 @@ public class RefreshToken {
     @Column(name = "revoked")
     private boolean revoked = false;
 
+    /**
+     * 撤銷（輪換）時間
+     */
+    @Column(name = "revoked_at")
+    private LocalDateTime revokedAt;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -48,12 +74,20 @@ public class RefreshToken {
         this.user = user;
     }
 
-    public String getToken() {
-        return token;
+    public byte[] getTokenHash() {
+        return tokenHash;
+    }
+
+    public void setTokenHash(byte[] tokenHash) {
+        this.tokenHash = tokenHash;
+    }
+
+    public String getSessionId() {
+        return sessionId;
     }
 
-    public void setToken(String token) {
-        this.token = token;
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
     }
 
     public LocalDateTime getExpiresAt() {
@@ -80,6 +114,14 @@ public class RefreshToken {
         this.revoked = revoked;
     }
 
+    public LocalDateTime getRevokedAt() {
+        return revokedAt;
+    }
+
+    public void setRevokedAt(LocalDateTime revokedAt) {
+        this.revokedAt = revokedAt;
+    }
+
     public boolean isExpired() {
         return LocalDateTime.now().isAfter(this.expiresAt);
     }
@@ -1,5 +1,7 @@
 package com.subcycle.entity;
 
+import com.subcycle.entity.converter.BillingCycleConverter;
+import com.subcycle.entity.converter.SubscriptionStatusConverter;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -10,7 +12,11 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "subscriptions")
+@Table(name = "subscriptions", indexes = {
+        @Index(name = "idx_subscriptions_status", columnList = "status"),
+        @Index(name = "idx_subscriptions_cycle_next_payment", columnList = "billing_cycle, next_payment_date"),
+        @Index(name = "idx_subscriptions_remind_on", columnList = "remind_on")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -37,20 +43,28 @@ public class Subscription {
     @Column(name = "currency", length = 3)
     private String currency = "TWD";
 
-    @Column(name = "billing_cycle", length = 20)
-    private String billingCycle;
+    @Column(name = "billing_cycle", length = 1)
+    @Convert(converter = BillingCycleConverter.class)
+    private BillingCycle billingCycle;
 
     @Column(name = "next_payment_date")
     private LocalDate nextPaymentDate;
 
+    /**
+     * 提醒日：nextPaymentDate 減去用戶的提醒天數，扣款日或提醒天數變更時同步更新
+     */
+    @Column(name = "remind_on")
+    private LocalDate remindOn;
+
     @Column(name = "start_date")
     private LocalDate startDate;
 
     @Column(name = "end_date")
     private LocalDate endDate;
 
-    @Column(length = 20)
-    private String status;
+    @Column(length = 1)
+    @Convert(converter = SubscriptionStatusConverter.class)
+    private SubscriptionStatus status;
 
     @Column(name = "auto_renew")
     private Boolean autoRenew = true;
@@ -75,10 +89,10 @@ public class Subscription {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
         if (status == null) {
-            status = "active";
+            status = SubscriptionStatus.ACTIVE;
         }
         if (billingCycle == null) {
-            billingCycle = "monthly";
+            billingCycle = BillingCycle.MONTHLY;
         }
     }
 
@@ -0,0 +1,67 @@
+package com.subcycle.entity;
+
+/**
+ * 訂閱狀態
+ * 資料庫代碼的字母順序與 API 代碼一致，依狀態排序的結果不變
+ */
+public enum SubscriptionStatus {
+
+    ACTIVE("active", "A"),
+    CANCELLED("cancelled", "C"),
+    COMPLETED("completed", "D"),
+    EXPIRED("expired", "E"),
+    PAUSED("paused", "P");
+
+    private static final SubscriptionStatus[] VALUES = values();
+
+    private final String code;
+    private final String dbCode;
+
+    SubscriptionStatus(String code, String dbCode) {
+        this.code = code;
+        this.dbCode = dbCode;
+    }
+
+    /**
+     * API 使用的代碼（active、paused ...）
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * 資料庫儲存的單字元代碼
+     */
+    public String getDbCode() {
+        return dbCode;
+    }
+
+    /**
+     * 由 API 代碼轉換，無法辨識時返回 null
+     */
+    public static SubscriptionStatus parse(String code) {
+        if (code != null) {
+            for (SubscriptionStatus status : VALUES) {
+                if (status.code.equalsIgnoreCase(code)) {
+                    return status;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 由資料庫代碼轉換，同時相容尚未遷移的舊資料（active、expired ...），無法辨識時返回 null
+     */
+    public static SubscriptionStatus fromDbCode(String dbCode) {
+        if (dbCode == null || dbCode.isEmpty()) {
+            return null;
+        }
+        for (SubscriptionStatus status : VALUES) {
+            if (status.dbCode.equals(dbCode)) {
+                return status;
+            }
+        }
+        return parse(dbCode);
+    }
+}
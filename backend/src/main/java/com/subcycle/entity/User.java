@@ -46,6 +46,12 @@ public class User implements UserDetails {
     @Column(name = "notification_days", columnDefinition = "INT DEFAULT 7")
     private Integer notificationDays;
 
+    /**
+     * 同一天需要提醒的多筆訂閱合併為一封郵件
+     */
+    @Column(name = "reminder_digest", columnDefinition = "BOOLEAN DEFAULT FALSE")
+    private Boolean reminderDigest;
+
     @Column(length = 20, columnDefinition = "VARCHAR(20) DEFAULT 'USER'")
     private String role;
 
@@ -55,6 +61,12 @@ public class User implements UserDetails {
     @Column(name = "email_verified", columnDefinition = "BOOLEAN DEFAULT FALSE")
     private Boolean emailVerified;
 
+    /**
+     * Token 版本：停用帳號、重置密碼或變更角色時遞增，使已簽發的 access token 失效
+     */
+    @Column(name = "token_version", columnDefinition = "INT DEFAULT 0")
+    private Integer tokenVersion;
+
     @Column(name = "last_login_at")
     private LocalDateTime lastLoginAt;
 
@@ -82,12 +94,18 @@ public class User implements UserDetails {
         if (notificationDays == null) {
             notificationDays = 7;
         }
+        if (reminderDigest == null) {
+            reminderDigest = false;
+        }
         if (role == null) {
             role = "USER";
         }
         if (emailVerified == null) {
             emailVerified = false;
         }
+        if (tokenVersion == null) {
+            tokenVersion = 0;
+        }
     }
 
     /**
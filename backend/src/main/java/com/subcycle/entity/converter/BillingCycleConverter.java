@@ -0,0 +1,30 @@
+package com.subcycle.entity.converter;
+
+import com.subcycle.entity.BillingCycle;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 計費週期與資料庫單字元代碼的轉換
+ * 讀取時相容舊資料，無法辨識的代碼記錄警告並視為每月
+ */
+@Converter(autoApply = true)
+@Slf4j
+public class BillingCycleConverter implements AttributeConverter<BillingCycle, String> {
+
+    @Override
+    public String convertToDatabaseColumn(BillingCycle cycle) {
+        return cycle != null ? cycle.getDbCode() : null;
+    }
+
+    @Override
+    public BillingCycle convertToEntityAttribute(String dbCode) {
+        BillingCycle cycle = BillingCycle.fromDbCode(dbCode);
+        if (cycle == null && dbCode != null && !dbCode.isEmpty()) {
+            log.warn("無法辨識的 subscriptions.billing_cycle 代碼 '{}'，視為 {}", dbCode, BillingCycle.MONTHLY);
+            return BillingCycle.MONTHLY;
+        }
+        return cycle;
+    }
+}
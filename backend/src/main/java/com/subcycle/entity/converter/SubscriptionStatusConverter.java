@@ -0,0 +1,30 @@
+package com.subcycle.entity.converter;
+
+import com.subcycle.entity.SubscriptionStatus;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 訂閱狀態與資料庫單字元代碼的轉換
+ * 讀取時相容舊資料，無法辨識的代碼記錄警告並視為啟用中
+ */
+@Converter(autoApply = true)
+@Slf4j
+public class SubscriptionStatusConverter implements AttributeConverter<SubscriptionStatus, String> {
+
+    @Override
+    public String convertToDatabaseColumn(SubscriptionStatus status) {
+        return status != null ? status.getDbCode() : null;
+    }
+
+    @Override
+    public SubscriptionStatus convertToEntityAttribute(String dbCode) {
+        SubscriptionStatus status = SubscriptionStatus.fromDbCode(dbCode);
+        if (status == null && dbCode != null && !dbCode.isEmpty()) {
+            log.warn("無法辨識的 subscriptions.status 代碼 '{}'，視為 {}", dbCode, SubscriptionStatus.ACTIVE);
+            return SubscriptionStatus.ACTIVE;
+        }
+        return status;
+    }
+}
@@ -1,6 +1,7 @@
 package com.subcycle.exception;
 
 import com.subcycle.dto.ErrorResponse;
+import jakarta.persistence.EntityNotFoundException;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -41,6 +42,22 @@ public class GlobalExceptionHandler {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
         }
 
+        /**
+         * 目前用戶以延遲載入的參考取得（CustomUserDetailsService.resolveUser），
+         * 用戶在其他節點剛被刪除、本節點尚未同步時，讀取欄位才會發現用戶不存在
+         */
+        @ExceptionHandler(EntityNotFoundException.class)
+        public ResponseEntity<ErrorResponse> handleEntityNotFound(
+                        EntityNotFoundException ex,
+                        HttpServletRequest request) {
+                ErrorResponse error = new ErrorResponse(
+                                HttpStatus.UNAUTHORIZED.value(),
+                                "Unauthorized",
+                                "用戶不存在或已被刪除",
+                                request.getRequestURI());
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        }
+
         @ExceptionHandler(MethodArgumentNotValidException.class)
         public ResponseEntity<Map<String, Object>> handleValidationExceptions(
                         MethodArgumentNotValidException ex,
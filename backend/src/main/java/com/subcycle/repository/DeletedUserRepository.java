@@ -0,0 +1,26 @@
+package com.subcycle.repository;
+
+import com.subcycle.entity.DeletedUser;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface DeletedUserRepository extends JpaRepository<DeletedUser, Long> {
+
+    /**
+     * 刪除前簽發的 access token 尚未全部過期的用戶
+     */
+    @Query("SELECT d.userId FROM DeletedUser d WHERE d.expiresAt > :now")
+    List<Long> findActiveUserIds(LocalDateTime now);
+
+    /**
+     * 刪除一批已過期的紀錄，每批最多 limit 筆
+     * @return 刪除筆數
+     */
+    @Modifying
+    @Query(value = "DELETE FROM deleted_users WHERE expires_at < :now LIMIT :limit", nativeQuery = true)
+    int deleteExpiredBatch(LocalDateTime now, int limit);
+}
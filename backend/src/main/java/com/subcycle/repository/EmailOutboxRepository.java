@@ -0,0 +1,50 @@
+package com.subcycle.repository;
+
+import com.subcycle.entity.EmailOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    /**
+     * 單一狀態的筆數
+     */
+    interface StatusCount {
+        EmailOutbox.Status getStatus();
+        Long getTotal();
+    }
+
+    /**
+     * 鎖定可寄送的郵件：到期的 PENDING 與租約逾時的 SENDING，其他工作已鎖定的列直接略過
+     * 需在交易中執行，鎖定到交易結束
+     */
+    @Query(value = "SELECT id FROM email_outbox " +
+                   "WHERE status IN ('PENDING', 'SENDING') AND next_attempt_at <= :now " +
+                   "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<Long> lockDueIds(LocalDateTime now, int limit);
+
+    /**
+     * 標記為寄送中並累加嘗試次數，leaseUntil 之前其他工作不會再取出
+     */
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = com.subcycle.entity.EmailOutbox.Status.SENDING, " +
+           "e.attempts = e.attempts + 1, e.nextAttemptAt = :leaseUntil WHERE e.id IN :ids")
+    int markSending(Collection<Long> ids, LocalDateTime leaseUntil);
+
+    /**
+     * 將同一批寄送成功的郵件一次標記為已寄送
+     */
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = com.subcycle.entity.EmailOutbox.Status.SENT, " +
+           "e.sentAt = :sentAt, e.lastError = NULL WHERE e.id IN :ids")
+    int markSent(Collection<Long> ids, LocalDateTime sentAt);
+
+    @Query("SELECT e.status AS status, COUNT(e) AS total FROM EmailOutbox e GROUP BY e.status")
+    List<StatusCount> countByStatus();
+}
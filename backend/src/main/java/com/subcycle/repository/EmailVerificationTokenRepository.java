@@ -3,10 +3,21 @@ package com.subcycle.repository;
 import com.subcycle.entity.EmailVerificationToken;
 import com.subcycle.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 public interface EmailVerificationTokenRepository extends JpaRepository<EmailVerificationToken, Long> {
     Optional<EmailVerificationToken> findByToken(String token);
     void deleteByUser(User user);
+
+    /**
+     * 刪除一批已過期的驗證 token，每批最多 limit 筆
+     * @return 刪除筆數
+     */
+    @Modifying
+    @Query(value = "DELETE FROM email_verification_tokens WHERE expiry_date < :now LIMIT :limit", nativeQuery = true)
+    int deleteExpiredBatch(LocalDateTime now, int limit);
 }
@@ -0,0 +1,7 @@
+package com.subcycle.repository;
+
+import com.subcycle.entity.ExchangeRate;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ExchangeRateRepository extends JpaRepository<ExchangeRate, Long> {
+}
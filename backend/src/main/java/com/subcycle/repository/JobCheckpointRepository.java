@@ -0,0 +1,7 @@
+package com.subcycle.repository;
+
+import com.subcycle.entity.JobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+}
@@ -0,0 +1,67 @@
+package com.subcycle.repository;
+
+import com.subcycle.entity.JobLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 租約的取得、延長與釋放皆為單一條件式 UPDATE，由資料列鎖保證同時只有一個節點成功
+ */
+public interface JobLockRepository extends JpaRepository<JobLock, String> {
+
+    /**
+     * 建立工作的租約資料列（已存在時略過）
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO job_lock (job_name) VALUES (:jobName)", nativeQuery = true)
+    int ensureExists(String jobName);
+
+    /**
+     * 租約未被持有或已到期，且該批次尚未完成時取得租約
+     * @return 1 表示取得
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE job_lock SET owner = :owner, run_key = :runKey, heartbeat_at = NOW(3), " +
+                   "locked_until = DATE_ADD(NOW(3), INTERVAL :leaseMillis * 1000 MICROSECOND) " +
+                   "WHERE job_name = :jobName " +
+                   "AND (locked_until IS NULL OR locked_until < NOW(3)) " +
+                   "AND (completed_key IS NULL OR completed_key <> :runKey)",
+           nativeQuery = true)
+    int tryAcquire(String jobName, String owner, String runKey, long leaseMillis);
+
+    /**
+     * 心跳：延長仍由自己持有的租約
+     * @return 0 表示租約已被其他節點接手
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE job_lock SET heartbeat_at = NOW(3), " +
+                   "locked_until = DATE_ADD(NOW(3), INTERVAL :leaseMillis * 1000 MICROSECOND) " +
+                   "WHERE job_name = :jobName AND owner = :owner AND run_key = :runKey",
+           nativeQuery = true)
+    int renew(String jobName, String owner, String runKey, long leaseMillis);
+
+    /**
+     * 執行成功：釋放租約並記錄該批次已完成
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE job_lock SET owner = NULL, locked_until = NULL, completed_key = run_key " +
+                   "WHERE job_name = :jobName AND owner = :owner AND run_key = :runKey",
+           nativeQuery = true)
+    int complete(String jobName, String owner, String runKey);
+
+    /**
+     * 執行失敗：只釋放租約，該批次仍未完成，可由其他節點或下次檢查重新執行
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE job_lock SET owner = NULL, locked_until = NULL " +
+                   "WHERE job_name = :jobName AND owner = :owner AND run_key = :runKey",
+           nativeQuery = true)
+    int release(String jobName, String owner, String runKey);
+}
@@ -0,0 +1,110 @@
+package com.subcycle.repository;
+
+import com.subcycle.entity.PaymentLedger;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface PaymentLedgerRepository extends JpaRepository<PaymentLedger, Long> {
+
+    /**
+     * 單一幣別的金額加總
+     */
+    interface CurrencyTotal {
+        String getCurrency();
+        BigDecimal getTotal();
+    }
+
+    /**
+     * 展開整批推進時被跳過的扣款，步數上限 :maxSteps（需小於 cte_max_recursion_depth）
+     */
+    String BULK_STEPS = "WITH RECURSIVE steps (n) AS (SELECT 0 UNION ALL SELECT n + 1 FROM steps WHERE n < :maxSteps) ";
+
+    String BULK_LEDGER_INSERT = "INSERT IGNORE INTO payment_ledger (subscription_id, user_id, paid_on, amount, currency, created_at) ";
+
+    String BULK_LEDGER_CONDITION = "AND COALESCE(s.include_historical_payments, TRUE) = TRUE ";
+
+    /**
+     * 回填的扣款日：早於起始日的扣款調整到起始日
+     */
+    String BACKFILL_PAID_ON = "IF(o.start_date IS NOT NULL AND o.d < o.start_date, o.start_date, o.d)";
+
+    /**
+     * 以天為單位的週期：在整批推進前寫入 [next_payment_date, :today) 之間的扣款（與 SubscriptionRepository.advanceDayCycle 條件相同）
+     */
+    @Modifying
+    @Query(value = BULK_LEDGER_INSERT + BULK_STEPS +
+                   "SELECT s.id, s.user_id, DATE_ADD(s.next_payment_date, INTERVAL steps.n * :stepDays DAY), s.price, " +
+                   "UPPER(COALESCE(s.currency, 'TWD')), CURRENT_TIMESTAMP " +
+                   "FROM subscriptions s JOIN steps " +
+                   "ON DATE_ADD(s.next_payment_date, INTERVAL steps.n * :stepDays DAY) < :today " +
+                   "WHERE " + SubscriptionRepository.BULK_ROLLOVER_ELIGIBLE + BULK_LEDGER_CONDITION +
+                   "AND (s.end_date IS NULL OR DATE_ADD(s.next_payment_date, INTERVAL steps.n * :stepDays DAY) <= s.end_date)",
+           nativeQuery = true)
+    int insertSkippedDayCycle(String cycle, int stepDays, LocalDate today, int maxLagDays, int maxSteps);
+
+    /**
+     * 以月為單位的週期：在整批推進前寫入 [next_payment_date, :today) 之間的扣款（與 SubscriptionRepository.advanceMonthCycle 條件相同）
+     */
+    @Modifying
+    @Query(value = BULK_LEDGER_INSERT + BULK_STEPS +
+                   "SELECT s.id, s.user_id, DATE_ADD(s.next_payment_date, INTERVAL steps.n * :stepMonths MONTH), s.price, " +
+                   "UPPER(COALESCE(s.currency, 'TWD')), CURRENT_TIMESTAMP " +
+                   "FROM subscriptions s JOIN steps " +
+                   "ON DATE_ADD(s.next_payment_date, INTERVAL steps.n * :stepMonths MONTH) < :today " +
+                   "WHERE " + SubscriptionRepository.BULK_MONTH_ROLLOVER_ELIGIBLE + BULK_LEDGER_CONDITION +
+                   "AND (s.end_date IS NULL OR DATE_ADD(s.next_payment_date, INTERVAL steps.n * :stepMonths MONTH) <= s.end_date)",
+           nativeQuery = true)
+    int insertSkippedMonthCycle(String cycle, int stepMonths, LocalDate today, int maxLagDays, int maxSteps);
+
+    /**
+     * 回填：逐次往前展開 ID 在 (:afterId, :lastId] 的訂閱於 next_payment_date 之前、[:from, :today) 內的扣款
+     * 以遞迴逐步 DATE_SUB，月底夾日與 BillingCycle.advance 相同；跨越起始日的扣款調整到起始日（與 PaymentOccurrences 相同）。
+     * 每日、每週週期從不早於 :today 的最近一期開始展開；每個訂閱最多 :maxSteps 步（需小於 cte_max_recursion_depth）。
+     * :includeUnknown 為 TRUE 時一併處理代碼為空或無法辨識（不在 :knownCodes 中）的訂閱，與讀取時相同視為此週期。
+     */
+    @Modifying
+    @Query(value = BULK_LEDGER_INSERT +
+                   "WITH RECURSIVE occ (id, user_id, price, currency, start_date, end_date, n, d, following) AS (" +
+                   "SELECT s.id, s.user_id, s.price, UPPER(COALESCE(s.currency, 'TWD')), s.start_date, s.end_date, 0, " +
+                   "IF(:stepDays > 0, DATE_SUB(s.next_payment_date, INTERVAL " +
+                   "GREATEST(0, FLOOR(DATEDIFF(s.next_payment_date, :today) / :stepDays)) * :stepDays DAY), s.next_payment_date), " +
+                   "CAST(NULL AS DATE) " +
+                   "FROM subscriptions s " +
+                   "WHERE s.id > :afterId AND s.id <= :lastId AND s.next_payment_date IS NOT NULL " + BULK_LEDGER_CONDITION +
+                   "AND (s.billing_cycle IN (:codes) OR (:includeUnknown = TRUE " +
+                   "AND (s.billing_cycle IS NULL OR s.billing_cycle NOT IN (:knownCodes)))) " +
+                   "UNION ALL " +
+                   "SELECT o.id, o.user_id, o.price, o.currency, o.start_date, o.end_date, o.n + 1, " +
+                   "IF(:stepDays > 0, DATE_SUB(o.d, INTERVAL :stepDays DAY), DATE_SUB(o.d, INTERVAL :stepMonths MONTH)), o.d " +
+                   "FROM occ o WHERE o.n < :maxSteps AND o.d > :from AND (o.start_date IS NULL OR o.d > o.start_date)) " +
+                   "SELECT o.id, o.user_id, " + BACKFILL_PAID_ON + ", o.price, o.currency, CURRENT_TIMESTAMP " +
+                   "FROM occ o WHERE o.n >= 1 AND o.d >= :from " +
+                   "AND (o.start_date IS NULL OR o.d >= o.start_date OR o.following > o.start_date) " +
+                   "AND " + BACKFILL_PAID_ON + " < :today " +
+                   "AND (o.end_date IS NULL OR " + BACKFILL_PAID_ON + " <= o.end_date)",
+           nativeQuery = true)
+    int insertBackfill(Long afterId, Long lastId, Collection<String> codes, boolean includeUnknown,
+                       Collection<String> knownCodes, int stepDays, int stepMonths,
+                       LocalDate from, LocalDate today, int maxSteps);
+
+    /**
+     * 用戶在 [from, to] 區間內各幣別的扣款總額（使用 idx_payment_ledger_user_paid_on）
+     */
+    @Query("SELECT l.currency AS currency, SUM(l.amount) AS total FROM PaymentLedger l " +
+           "WHERE l.userId = :userId AND l.paidOn BETWEEN :from AND :to GROUP BY l.currency")
+    List<CurrencyTotal> sumByCurrency(Long userId, LocalDate from, LocalDate to);
+
+    @Modifying
+    @Query("DELETE FROM PaymentLedger l WHERE l.subscriptionId = :subscriptionId")
+    void deleteBySubscriptionId(Long subscriptionId);
+
+    @Modifying
+    @Query("DELETE FROM PaymentLedger l WHERE l.userId = :userId")
+    void deleteByUserId(Long userId);
+}
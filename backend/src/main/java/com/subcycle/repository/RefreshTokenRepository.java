@@ -7,19 +7,50 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
 
-    Optional<RefreshToken> findByToken(String token);
+    /**
+     * 以 token 的 SHA-256 摘要查詢（唯一索引）
+     */
+    @Query("SELECT rt FROM RefreshToken rt JOIN FETCH rt.user WHERE rt.tokenHash = :tokenHash")
+    Optional<RefreshToken> findByTokenHash(byte[] tokenHash);
 
-    Optional<RefreshToken> findByUser(User user);
+    /**
+     * 將 token 標記為已輪換；只有尚未撤銷時才會更新，並行的刷新只有一個會成功
+     * @return 更新筆數，0 表示已被輪換、撤銷或刪除
+     */
+    @Modifying
+    @Query("UPDATE RefreshToken rt SET rt.revoked = true, rt.revokedAt = :now WHERE rt.id = :id AND rt.revoked = false")
+    int markRotated(Long id, LocalDateTime now);
+
+    /**
+     * 用戶尚未過期的 session，最近建立的在前
+     */
+    @Query("SELECT rt.sessionId FROM RefreshToken rt WHERE rt.user = :user AND rt.revoked = false " +
+           "AND rt.expiresAt > :now ORDER BY rt.createdAt DESC")
+    List<String> findActiveSessionIds(User user, LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken rt WHERE rt.sessionId IN :sessionIds")
+    int deleteBySessionIds(Collection<String> sessionIds);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken rt WHERE rt.user = :user AND rt.sessionId = :sessionId")
+    int deleteByUserAndSessionId(User user, String sessionId);
 
     @Modifying
     @Query("DELETE FROM RefreshToken rt WHERE rt.user = :user")
     void deleteByUser(User user);
 
+    /**
+     * 刪除一批已過期的 token（包含已輪換的），每批最多 limit 筆
+     * @return 刪除筆數
+     */
     @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.expiresAt < :now")
-    void deleteExpiredTokens(LocalDateTime now);
+    @Query(value = "DELETE FROM refresh_tokens WHERE expires_at < :now LIMIT :limit", nativeQuery = true)
+    int deleteExpiredBatch(LocalDateTime now, int limit);
 }
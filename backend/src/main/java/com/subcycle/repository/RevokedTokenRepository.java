@@ -0,0 +1,50 @@
+package com.subcycle.repository;
+
+import com.subcycle.entity.RevokedToken;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, Long> {
+
+    /**
+     * 記錄撤銷（同一個 jti 重複撤銷時略過）
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO revoked_tokens (jti, expires_at, revoked_at) VALUES (:jti, :expiresAt, :revokedAt)",
+           nativeQuery = true)
+    int insertIgnore(String jti, LocalDateTime expiresAt, LocalDateTime revokedAt);
+
+    /**
+     * token 是否已撤銷且尚未過期（Bloom filter 命中時才查詢）
+     */
+    boolean existsByJtiAndExpiresAtAfter(String jti, LocalDateTime now);
+
+    long countByExpiresAtAfter(LocalDateTime now);
+
+    /**
+     * 依 id 分批讀取尚未過期的撤銷紀錄（重建 Bloom filter 用）
+     */
+    @Query("SELECT r FROM RevokedToken r WHERE r.id > :afterId AND r.expiresAt > :now ORDER BY r.id")
+    List<RevokedToken> findActiveAfterId(Long afterId, LocalDateTime now, Pageable pageable);
+
+    /**
+     * 某時間之後新增的撤銷紀錄（同步其他節點的撤銷）
+     */
+    @Query("SELECT r.jti FROM RevokedToken r WHERE r.revokedAt >= :since AND r.expiresAt > :now")
+    List<String> findJtisRevokedSince(LocalDateTime since, LocalDateTime now);
+
+    /**
+     * 刪除已過期的撤銷紀錄
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RevokedToken r WHERE r.expiresAt <= :now")
+    int deleteExpired(LocalDateTime now);
+}
@@ -1,19 +1,63 @@
 package com.subcycle.repository;
 
+import com.subcycle.dto.PaymentReminder;
 import com.subcycle.entity.Category;
 import com.subcycle.entity.Subscription;
+import com.subcycle.entity.SubscriptionStatus;
 import com.subcycle.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.lang.NonNull;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.time.LocalDate;
 
 public interface SubscriptionRepository extends JpaRepository<Subscription, Long>, JpaSpecificationExecutor<Subscription> {
+
+    /**
+     * 可整批推進的條件：扣款日已過期、不早於起始日（不需處理跨越起始日的扣款），
+     * 且落後不超過 :maxLagDays 天（限制扣款紀錄展開的步數）
+     */
+    String BULK_ROLLOVER_ELIGIBLE = "s.billing_cycle = :cycle AND s.next_payment_date < :today " +
+            "AND (s.start_date IS NULL OR s.start_date <= s.next_payment_date) " +
+            "AND DATEDIFF(:today, s.next_payment_date) <= :maxLagDays ";
+
+    /**
+     * 以月為單位的週期只處理 28 日以前的扣款日，不會遇到月底夾日
+     */
+    String BULK_MONTH_ROLLOVER_ELIGIBLE = BULK_ROLLOVER_ELIGIBLE + "AND DAY(s.next_payment_date) <= 28 ";
+
+    /**
+     * 以天為單位的週期：第一個不早於 :today 的扣款日
+     */
+    String DAY_CYCLE_NEXT_PAYMENT = "DATE_ADD(s.next_payment_date, " +
+            "INTERVAL CEIL(DATEDIFF(:today, s.next_payment_date) / :stepDays) * :stepDays DAY)";
+
+    String MONTH_CYCLE_FLOOR_STEPS = "FLOOR((YEAR(:today) * 12 + MONTH(:today) " +
+            "- YEAR(s.next_payment_date) * 12 - MONTH(s.next_payment_date)) / :stepMonths)";
+
+    /**
+     * 以月為單位的週期：第一個不早於 :today 的扣款日（與 BillingCycle.stepsOnOrAfter 相同算法）
+     */
+    String MONTH_CYCLE_NEXT_PAYMENT = "DATE_ADD(s.next_payment_date, INTERVAL (" + MONTH_CYCLE_FLOOR_STEPS +
+            " + IF(DATE_ADD(s.next_payment_date, INTERVAL " + MONTH_CYCLE_FLOOR_STEPS + " * :stepMonths MONTH) < :today, 1, 0))" +
+            " * :stepMonths MONTH)";
+
+    /**
+     * 用戶的提醒天數（需以 u 為 users 的別名），未設定或小於 0 時視為 7 天
+     */
+    String REMIND_DAYS = "CASE WHEN u.notification_days IS NULL OR u.notification_days < 0 " +
+            "THEN 7 ELSE u.notification_days END";
+
+    String SUBSCRIPTION_REMIND_DAYS = "(SELECT " + REMIND_DAYS + " FROM users u WHERE u.id = s.user_id)";
+
     @NonNull
     List<Subscription> findByUserOrderByNextPaymentDateAsc(User user);
     @NonNull
@@ -21,7 +65,7 @@ public interface SubscriptionRepository extends JpaRepository<Subscription, Long
     @NonNull
     List<Subscription> findByUserAndCategoryIn(User user, List<Category> categories);
     @NonNull
-    List<Subscription> findByUserAndNextPaymentDateBefore(User user, LocalDate date);
+    List<Subscription> findByUserIdAndNextPaymentDateBefore(Long userId, LocalDate date);
     @NonNull
     Optional<Subscription> findByIdAndUser(Long id, User user);
     @NonNull
@@ -29,8 +73,136 @@ public interface SubscriptionRepository extends JpaRepository<Subscription, Long
     @NonNull
     List<Subscription> findByUserId(Long userId);
     @NonNull
-    List<Subscription> findByNextPaymentDateBefore(LocalDate date);
-    @NonNull
-    List<Subscription> findByStatus(String status);
+    List<Subscription> findByStatus(SubscriptionStatus status);
     void deleteByUser(User user);
+
+    /**
+     * 查詢在 [from, to] 區間內可能產生扣款的訂閱，並一併載入類別
+     */
+    @NonNull
+    @Query("SELECT s FROM Subscription s LEFT JOIN FETCH s.category " +
+           "WHERE s.user = :user AND s.nextPaymentDate IS NOT NULL " +
+           "AND (s.startDate IS NULL OR s.startDate <= :to) " +
+           "AND (s.endDate IS NULL OR s.endDate >= :from) " +
+           "ORDER BY s.id")
+    List<Subscription> findActiveInRangeWithCategory(User user, LocalDate from, LocalDate to);
+
+    /**
+     * 以 ID 遞增分批取出訂閱 ID（keyset 分頁，不使用 OFFSET）
+     */
+    @NonNull
+    @Query("SELECT s.id FROM Subscription s WHERE s.id > :afterId ORDER BY s.id")
+    List<Long> findIdsAfter(Long afterId, Pageable pageable);
+
+    /**
+     * 以 ID 遞增分批取出分區內扣款日已過期的訂閱（keyset 分頁，不使用 OFFSET）
+     * 分區依 MOD(user_id, partitionCount) 切分
+     */
+    @NonNull
+    @Query("SELECT s FROM Subscription s WHERE s.nextPaymentDate < :today AND s.id > :afterId " +
+           "AND MOD(s.user.id, :partitionCount) = :partitionIndex ORDER BY s.id")
+    List<Subscription> findExpiredAfterId(LocalDate today, Long afterId, int partitionCount, int partitionIndex,
+                                          Pageable pageable);
+
+    /**
+     * 取出分區內今天需要提醒的訂閱，以建構式查詢一次帶出用戶欄位（不載入實體，沒有逐筆查詢用戶）
+     * 以 remind_on 索引做範圍查詢：提醒天數最多 30 天，扣款日不早於今天時 remind_on 不早於 :earliest
+     * 依用戶排序，同一用戶的訂閱相鄰，方便合併為一封郵件
+     */
+    @NonNull
+    @Query("SELECT new com.subcycle.dto.PaymentReminder(s.id, u.id, u.email, u.name, u.notificationDays, " +
+           "u.reminderDigest, s.name, s.nextPaymentDate, s.price, s.currency) " +
+           "FROM Subscription s JOIN s.user u " +
+           "WHERE s.remindOn BETWEEN :earliest AND :today AND s.nextPaymentDate >= :today " +
+           "AND s.status = :status AND s.notificationEnabled = TRUE " +
+           "AND (s.reminderSent IS NULL OR s.reminderSent = FALSE) " +
+           "AND MOD(u.id, :partitionCount) = :partitionIndex " +
+           "ORDER BY u.id, s.nextPaymentDate, s.id")
+    List<PaymentReminder> findDueReminders(SubscriptionStatus status, LocalDate earliest, LocalDate today,
+                                           int partitionCount, int partitionIndex);
+
+    /**
+     * 將已發送提醒的訂閱一次標記為已發送
+     */
+    @Modifying
+    @Query("UPDATE Subscription s SET s.reminderSent = TRUE WHERE s.id IN :ids")
+    int markReminderSent(Collection<Long> ids);
+
+    /**
+     * 依目前的扣款日與用戶提醒天數重新計算提醒日
+     */
+    @Modifying
+    @Query(value = "UPDATE subscriptions s JOIN users u ON u.id = s.user_id " +
+                   "SET s.remind_on = DATE_SUB(s.next_payment_date, INTERVAL " + REMIND_DAYS + " DAY) " +
+                   "WHERE s.id IN (:ids)",
+           nativeQuery = true)
+    int syncRemindOn(Collection<Long> ids);
+
+    /**
+     * 用戶變更提醒天數後重新計算其所有訂閱的提醒日
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE subscriptions s JOIN users u ON u.id = s.user_id " +
+                   "SET s.remind_on = DATE_SUB(s.next_payment_date, INTERVAL " + REMIND_DAYS + " DAY) " +
+                   "WHERE s.user_id = :userId",
+           nativeQuery = true)
+    int syncRemindOnForUser(Long userId);
+
+    /**
+     * 補上尚未計算提醒日的訂閱（新增欄位前的既有資料）
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE subscriptions s JOIN users u ON u.id = s.user_id " +
+                   "SET s.remind_on = DATE_SUB(s.next_payment_date, INTERVAL " + REMIND_DAYS + " DAY) " +
+                   "WHERE s.remind_on IS NULL AND s.next_payment_date IS NOT NULL",
+           nativeQuery = true)
+    int fillMissingRemindOn();
+
+    /**
+     * 以天為單位的週期：下一次扣款日超過到期日者標記為已到期並清除扣款日
+     */
+    @Modifying
+    @Query(value = "UPDATE subscriptions s SET s.status = :expiredStatus, s.next_payment_date = NULL, " +
+                   "s.remind_on = NULL, s.updated_at = CURRENT_TIMESTAMP " +
+                   "WHERE " + BULK_ROLLOVER_ELIGIBLE + "AND s.end_date IS NOT NULL AND " + DAY_CYCLE_NEXT_PAYMENT + " > s.end_date",
+           nativeQuery = true)
+    int expireDayCycle(String cycle, int stepDays, LocalDate today, int maxLagDays, String expiredStatus);
+
+    /**
+     * 以天為單位的週期：推進到第一個不早於今天的扣款日，並重設提醒狀態
+     * remind_on 需在 next_payment_date 之前指定（MySQL 依序套用 SET，之後的運算式會讀到新值）
+     */
+    @Modifying
+    @Query(value = "UPDATE subscriptions s SET " +
+                   "s.remind_on = DATE_SUB(" + DAY_CYCLE_NEXT_PAYMENT + ", INTERVAL " + SUBSCRIPTION_REMIND_DAYS + " DAY), " +
+                   "s.next_payment_date = " + DAY_CYCLE_NEXT_PAYMENT + ", " +
+                   "s.reminder_sent = FALSE, s.updated_at = CURRENT_TIMESTAMP " +
+                   "WHERE " + BULK_ROLLOVER_ELIGIBLE + "AND (s.end_date IS NULL OR " + DAY_CYCLE_NEXT_PAYMENT + " <= s.end_date)",
+           nativeQuery = true)
+    int advanceDayCycle(String cycle, int stepDays, LocalDate today, int maxLagDays);
+
+    /**
+     * 以月為單位的週期：下一次扣款日超過到期日者標記為已到期並清除扣款日
+     */
+    @Modifying
+    @Query(value = "UPDATE subscriptions s SET s.status = :expiredStatus, s.next_payment_date = NULL, " +
+                   "s.remind_on = NULL, s.updated_at = CURRENT_TIMESTAMP " +
+                   "WHERE " + BULK_MONTH_ROLLOVER_ELIGIBLE + "AND s.end_date IS NOT NULL AND " + MONTH_CYCLE_NEXT_PAYMENT + " > s.end_date",
+           nativeQuery = true)
+    int expireMonthCycle(String cycle, int stepMonths, LocalDate today, int maxLagDays, String expiredStatus);
+
+    /**
+     * 以月為單位的週期：推進到第一個不早於今天的扣款日，並重設提醒狀態
+     * remind_on 需在 next_payment_date 之前指定（同 advanceDayCycle）
+     */
+    @Modifying
+    @Query(value = "UPDATE subscriptions s SET " +
+                   "s.remind_on = DATE_SUB(" + MONTH_CYCLE_NEXT_PAYMENT + ", INTERVAL " + SUBSCRIPTION_REMIND_DAYS + " DAY), " +
+                   "s.next_payment_date = " + MONTH_CYCLE_NEXT_PAYMENT + ", " +
+                   "s.reminder_sent = FALSE, s.updated_at = CURRENT_TIMESTAMP " +
+                   "WHERE " + BULK_MONTH_ROLLOVER_ELIGIBLE + "AND (s.end_date IS NULL OR " + MONTH_CYCLE_NEXT_PAYMENT + " <= s.end_date)",
+           nativeQuery = true)
+    int advanceMonthCycle(String cycle, int stepMonths, LocalDate today, int maxLagDays);
 }
@@ -4,8 +4,10 @@ import com.subcycle.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -15,6 +17,14 @@ import java.util.Optional;
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    /**
+     * 用戶的 token 版本
+     */
+    interface TokenVersion {
+        Long getId();
+        Integer getTokenVersion();
+    }
+
     /**
      * 根據 email 查詢使用者
      * @param email 電子郵件
@@ -37,4 +47,11 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @return Page<User>
      */
     Page<User> findByEmailContainingOrNameContaining(String email, String name, Pageable pageable);
+
+    /**
+     * 查詢 token 版本大於 0 的用戶（曾被撤銷過 token 的用戶，通常很少）
+     * @return List<TokenVersion>
+     */
+    @Query("SELECT u.id AS id, u.tokenVersion AS tokenVersion FROM User u WHERE u.tokenVersion > 0")
+    List<TokenVersion> findRevokedTokenVersions();
 }
@@ -0,0 +1,192 @@
+package com.subcycle.security;
+
+import com.subcycle.config.JwtProperties;
+import com.subcycle.entity.RevokedToken;
+import com.subcycle.repository.RevokedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Access token 撤銷服務
+ * 登出時將 token 的 jti 與過期時間寫入 revoked_tokens；每個請求先查記憶體中的 Bloom filter，
+ * 只有命中（已撤銷或誤判）時才查詢資料庫確認，未撤銷的 token 不會產生資料庫查詢。
+ *
+ * 記憶體只有 Bloom filter：誤判率 1% 時每筆約 9.6 位元，100 萬筆撤銷約 9.6M 位元（約 1.2 MB，k = 7），
+ * 大小依尚未過期的筆數決定，上限為 security.revocation.max-entries 筆對應的大小（預設 200 萬筆，約 2.3 MB），
+ * 超過上限時不再放大，只是誤判率上升。
+ * 定期重建時刪除已過期的紀錄並依目前筆數重新配置；兩次重建之間以 revoked_at 同步其他節點的撤銷。
+ *
+ * 撤銷整個登入 session 時改以 sid 寫入同一張表（jti 與 sid 都是 UUID），保留到該 session 已簽發的 token 都過期為止。
+ */
+@Service
+@Slf4j
+public class AccessTokenRevocationService {
+
+    private static final int PAGE_SIZE = 10_000;
+
+    /**
+     * 同步時往前多讀的時間，涵蓋節點間的時鐘誤差與較晚提交的交易
+     */
+    private static final long SYNC_OVERLAP_SECONDS = 30;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private JwtProperties jwtProperties;
+
+    @Value("${security.revocation.expected-entries:100000}")
+    private long expectedEntries;
+
+    @Value("${security.revocation.max-entries:2000000}")
+    private long maxEntries;
+
+    @Value("${security.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private volatile BloomFilter filter;
+
+    private LocalDateTime lastSync;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder filterHits = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        filter = new BloomFilter(expectedEntries, falsePositiveRate);
+        lastSync = LocalDateTime.now();
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Token revocation: initial load failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 撤銷 token，直到其原本的過期時間
+     * 在交易中撤銷時，紀錄要到提交後重建才讀得到；若提交前 filter 已被重建替換，
+     * 寫入舊 filter 的 jti 會遺失，因此提交後再寫入一次目前的 filter
+     */
+    public void revoke(String jti, Instant expiresAt) {
+        if (jti == null || expiresAt == null || !expiresAt.isAfter(Instant.now())) {
+            return;
+        }
+        revokedTokenRepository.insertIgnore(jti, LocalDateTime.ofInstant(expiresAt, ZoneId.systemDefault()),
+                LocalDateTime.now());
+        filter.put(jti);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    filter.put(jti);
+                }
+            });
+        }
+    }
+
+    /**
+     * 撤銷 session 目前為止簽發的所有 access token（refresh token 外洩時使用）
+     */
+    public void revokeSession(String sessionId) {
+        revoke(sessionId, Instant.now().plusMillis(jwtProperties.getExpiration()));
+    }
+
+    /**
+     * token 是否已撤銷：Bloom filter 未命中即返回 false，命中時查詢資料庫確認
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        checks.increment();
+        if (!filter.mightContain(jti)) {
+            return false;
+        }
+        filterHits.increment();
+        boolean revoked = revokedTokenRepository.existsByJtiAndExpiresAtAfter(jti, LocalDateTime.now());
+        if (revoked) {
+            confirmed.increment();
+        }
+        return revoked;
+    }
+
+    /**
+     * 加入上次同步之後其他節點新增的撤銷
+     */
+    @Scheduled(fixedDelayString = "${security.revocation.sync-interval-ms:5000}",
+               initialDelayString = "${security.revocation.sync-interval-ms:5000}")
+    public synchronized void sync() {
+        LocalDateTime now = LocalDateTime.now();
+        BloomFilter current = filter;
+        for (String jti : revokedTokenRepository.findJtisRevokedSince(lastSync.minusSeconds(SYNC_OVERLAP_SECONDS), now)) {
+            current.put(jti);
+        }
+        lastSync = now;
+    }
+
+    /**
+     * 刪除已過期的紀錄，依尚未過期的筆數重新建立 Bloom filter
+     */
+    @Scheduled(fixedDelayString = "${security.revocation.rebuild-interval-ms:600000}",
+               initialDelayString = "${security.revocation.rebuild-interval-ms:600000}")
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        int pruned = revokedTokenRepository.deleteExpired(now);
+        long active = revokedTokenRepository.countByExpiresAtAfter(now);
+
+        // 預留一倍空間給下次重建前新增的撤銷
+        long capacity = Math.min(Math.max(expectedEntries, active * 2), maxEntries);
+        BloomFilter next = new BloomFilter(capacity, falsePositiveRate);
+        long afterId = 0;
+        List<RevokedToken> page;
+        do {
+            page = revokedTokenRepository.findActiveAfterId(afterId, now, PageRequest.of(0, PAGE_SIZE));
+            for (RevokedToken token : page) {
+                next.put(token.getJti());
+                afterId = token.getId();
+            }
+        } while (page.size() == PAGE_SIZE);
+
+        filter = next;
+        lastSync = now;
+        // 重建期間寫入的撤銷
+        sync();
+
+        log.info("Token revocation: rebuilt filter with {} entries ({} bits, {} hash functions, {} KB), pruned {} expired in {} ms",
+                active, next.bitSize(), next.hashFunctions(), next.sizeInBytes() / 1024, pruned,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 撤銷統計：Bloom filter 大小、檢查次數、命中與確認撤銷次數（命中但未撤銷即為誤判）
+     */
+    public Map<String, Object> getStats() {
+        BloomFilter current = filter;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("expectedEntries", current.expectedInsertions());
+        stats.put("bitSize", current.bitSize());
+        stats.put("hashFunctions", current.hashFunctions());
+        stats.put("sizeInBytes", current.sizeInBytes());
+        stats.put("checks", checks.sum());
+        stats.put("filterHits", filterHits.sum());
+        stats.put("confirmedRevoked", confirmed.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,39 @@
+package com.subcycle.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 輕量認證主體
+ * 由 access token 的聲明建立，認證時不查詢資料庫；需要完整 User 的控制器以 @CurrentUser 取得
+ * tokenId 與 tokenExpiresAt 供登出時撤銷目前的 token，sessionId 供登出時只撤銷目前裝置的 refresh token
+ */
+public record AuthenticatedUser(Long id, String email, String role, String tokenId, Instant tokenExpiresAt,
+                                String sessionId)
+        implements UserDetails {
+
+    static AuthenticatedUser from(JwtClaims claims) {
+        return new AuthenticatedUser(claims.userId(), claims.subject(), claims.role(),
+                claims.tokenId(), claims.expiresAt(), claims.sessionId());
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role));
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+}
@@ -0,0 +1,17 @@
+package com.subcycle.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 注入目前登入的 User
+ * 認證主體只有 token 聲明，注入的是延遲載入的 User：只讀取 id 時不查詢資料庫，讀取其他欄位時才載入
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
@@ -11,7 +11,7 @@ import org.springframework.stereotype.Service;
 
 /**
  * 自定義 UserDetailsService
- * 從資料庫載入用戶資訊
+ * 從資料庫載入用戶資訊（登入時使用；一般請求的認證主體由 JWT 聲明建立）
  */
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
@@ -34,11 +34,25 @@ public class CustomUserDetailsService implements UserDetailsService {
             throw new UsernameNotFoundException("用戶未認證");
         }
 
-        Object principal = authentication.getPrincipal();
-        if (principal instanceof User) {
-            return (User) principal;
+        User user = resolveUser(authentication.getPrincipal());
+        if (user != null) {
+            return user;
         }
 
         throw new UsernameNotFoundException("無效的認證對象");
     }
+
+    /**
+     * 將認證主體轉為 User，無法轉換時返回 null
+     * 由 token 聲明建立的主體返回延遲載入的參考（讀取 id 以外的欄位時才查詢資料庫）
+     */
+    public User resolveUser(Object principal) {
+        if (principal instanceof User user) {
+            return user;
+        }
+        if (principal instanceof AuthenticatedUser authenticatedUser) {
+            return userRepository.getReferenceById(authenticatedUser.id());
+        }
+        return null;
+    }
 }
@@ -1,5 +1,6 @@
 package com.subcycle.security;
 
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -17,7 +18,8 @@ import java.io.IOException;
 
 /**
  * JWT 認證過濾器
- * 攔截每個請求，驗證 JWT Token
+ * 攔截每個請求，驗證 JWT Token（每個請求只解析、驗證一次簽名）
+ * 認證主體由 token 聲明建立，不查詢資料庫，撤銷以 token 版本判斷
  */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -28,6 +30,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Autowired
+    private AccessTokenRevocationService revocationService;
+
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request,
                                    @NonNull HttpServletResponse response,
@@ -36,31 +44,43 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authorizationHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String jwt = null;
+        JwtClaims claims = null;
 
-        // 從 Authorization header 中提取 JWT
+        // 從 Authorization header 中提取 JWT，解析時一併驗證簽名與過期時間
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
+            String jwt = authorizationHeader.substring(7);
             try {
-                username = jwtUtil.extractUsername(jwt);
-            } catch (Exception e) {
-                logger.error("無法從 JWT 提取用戶名", e);
+                claims = jwtUtil.verify(jwt);
+            } catch (JwtException | IllegalArgumentException e) {
+                logger.warn("JWT 驗證失敗: " + e.getMessage());
             }
         }
 
         // 驗證 JWT 並設置 SecurityContext
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-
-            if (jwtUtil.validateToken(jwt, userDetails)) {
-                UsernamePasswordAuthenticationToken authenticationToken =
-                    new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+        if (claims != null && claims.subject() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            if (claims.hasPrincipalClaims()) {
+                // 由聲明建立認證主體，不查詢資料庫；版本不符、jti 已登出或所屬 session 已撤銷表示 token 已被撤銷
+                if (tokenVersionRegistry.isCurrent(claims.userId(), claims.tokenVersion())
+                        && !revocationService.isRevoked(claims.tokenId())
+                        && !revocationService.isRevoked(claims.sessionId())) {
+                    authenticate(request, AuthenticatedUser.from(claims));
+                }
+            } else {
+                // 未帶用戶聲明的舊版 token，從資料庫載入用戶
+                UserDetails userDetails = this.userDetailsService.loadUserByUsername(claims.subject());
+                if (jwtUtil.validateToken(claims, userDetails)) {
+                    authenticate(request, userDetails);
+                }
             }
         }
 
         filterChain.doFilter(request, response);
     }
+
+    private void authenticate(HttpServletRequest request, UserDetails principal) {
+        UsernamePasswordAuthenticationToken authenticationToken =
+            new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+        authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+    }
 }
@@ -0,0 +1,41 @@
+package com.subcycle.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+
+/**
+ * 已驗證的 JWT 聲明
+ * 簽名與過期時間已在解析時檢查，每個請求只解析一次，之後的判斷都使用這個不可變的結果
+ * tokenId（jti）、userId、role、tokenVersion、sessionId 在舊版 token（未帶這些聲明）中為 null
+ */
+public record JwtClaims(String subject, String tokenId, Long userId, String role, Integer tokenVersion,
+                        String sessionId, Instant issuedAt, Instant expiresAt) {
+
+    static final String USER_ID = "uid";
+    static final String ROLE = "role";
+    static final String TOKEN_VERSION = "ver";
+    static final String SESSION_ID = "sid";
+
+    static JwtClaims from(Claims claims) {
+        Number userId = claims.get(USER_ID, Number.class);
+        Number tokenVersion = claims.get(TOKEN_VERSION, Number.class);
+        return new JwtClaims(
+                claims.getSubject(),
+                claims.getId(),
+                userId != null ? userId.longValue() : null,
+                claims.get(ROLE, String.class),
+                tokenVersion != null ? tokenVersion.intValue() : null,
+                claims.get(SESSION_ID, String.class),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                claims.getExpiration() != null ? claims.getExpiration().toInstant() : null
+        );
+    }
+
+    /**
+     * 是否帶有建立輕量認證主體所需的聲明
+     */
+    public boolean hasPrincipalClaims() {
+        return userId != null && role != null && tokenVersion != null;
+    }
+}
@@ -1,29 +1,52 @@
 package com.subcycle.security;
 
 import com.subcycle.config.JwtProperties;
+import com.subcycle.entity.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 /**
  * JWT 工具類
  * 負責生成和驗證 JWT Token
+ * 簽名密鑰與 JwtParser 在啟動時建立一次（兩者皆為執行緒安全），不在每次呼叫時重建
  */
 @Component
 public class JwtUtil {
 
     private final JwtProperties jwtProperties;
 
+    private final SecretKey signingKey;
+
+    private final JwtParser parser;
+
     public JwtUtil(JwtProperties jwtProperties) {
         this.jwtProperties = jwtProperties;
+        this.signingKey = Keys.hmacShaKeyFor(jwtProperties.getSecret().getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+    }
+
+    /**
+     * 解析並驗證 token（簽名與過期時間），只驗證一次簽名
+     * @throws JwtException token 無效或已過期
+     */
+    public JwtClaims verify(String token) {
+        return JwtClaims.from(extractAllClaims(token));
     }
 
     /**
@@ -52,26 +75,29 @@ public class JwtUtil {
      * 從 token 中提取所有聲明
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
 
     /**
-     * 檢查 token 是否過期
+     * 生成 token，帶有用戶 ID、角色與 token 版本，認證時不需查詢資料庫
      */
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public String generateToken(User user) {
+        return generateToken(user.getId(), user.getUsername(), user.getRole(),
+                user.getTokenVersion() != null ? user.getTokenVersion() : 0, null);
     }
 
     /**
-     * 生成 token
+     * 生成屬於某個登入 session（refresh token）的 token
      */
-    public String generateToken(UserDetails userDetails) {
+    public String generateToken(Long userId, String email, String role, int tokenVersion, String sessionId) {
         Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, userDetails.getUsername());
+        claims.put(JwtClaims.USER_ID, userId);
+        claims.put(JwtClaims.ROLE, role);
+        claims.put(JwtClaims.TOKEN_VERSION, tokenVersion);
+        if (sessionId != null) {
+            claims.put(JwtClaims.SESSION_ID, sessionId);
+        }
+        return createToken(claims, email);
     }
 
     /**
@@ -80,26 +106,30 @@ public class JwtUtil {
     private String createToken(Map<String, Object> claims, String subject) {
         return Jwts.builder()
                 .claims(claims)
+                .id(UUID.randomUUID().toString())
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + jwtProperties.getExpiration()))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
     /**
-     * 獲取簽名密鑰
+     * 驗證 token
      */
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = jwtProperties.getSecret().getBytes();
-        return Keys.hmacShaKeyFor(keyBytes);
+    public Boolean validateToken(String token, UserDetails userDetails) {
+        try {
+            return validateToken(verify(token), userDetails);
+        } catch (JwtException | IllegalArgumentException e) {
+            return false;
+        }
     }
 
     /**
-     * 驗證 token
+     * 驗證已解析的 token 是否屬於該用戶（過期時間已在解析時檢查）
      */
-    public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+    public boolean validateToken(JwtClaims claims, UserDetails userDetails) {
+        return claims.subject() != null && claims.subject().equals(userDetails.getUsername())
+                && (claims.expiresAt() == null || claims.expiresAt().isAfter(Instant.now()));
     }
 }
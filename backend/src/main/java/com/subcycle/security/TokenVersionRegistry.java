@@ -0,0 +1,111 @@
+package com.subcycle.security;
+
+import com.subcycle.config.JwtProperties;
+import com.subcycle.entity.DeletedUser;
+import com.subcycle.entity.User;
+import com.subcycle.repository.DeletedUserRepository;
+import com.subcycle.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token 版本登記
+ * 記錄每位用戶目前的 token 版本（user id → 版本），access token 帶有簽發時的版本，版本不符即視為已撤銷；
+ * 只保存版本大於 0 的用戶（曾被停用、重置密碼或變更角色），沒有紀錄的用戶版本為 0。
+ * 本節點的變更在交易提交後立即生效，其他節點的變更由定期重新載入同步；
+ * 刪除的用戶記錄在 deleted_users，其他節點同樣由重新載入得知。
+ */
+@Component
+@Slf4j
+public class TokenVersionRegistry {
+
+    /**
+     * 已刪除的用戶：任何版本的 token 都不再有效
+     */
+    private static final int DELETED = Integer.MAX_VALUE;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DeletedUserRepository deletedUserRepository;
+
+    @Autowired
+    private JwtProperties jwtProperties;
+
+    private final Map<Long, Integer> versions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    /**
+     * 從資料庫重新載入版本，版本只會增加，不會覆蓋本節點較新的紀錄
+     */
+    @Scheduled(fixedDelayString = "${security.token-version.refresh-interval-ms:30000}",
+               initialDelayString = "${security.token-version.refresh-interval-ms:30000}")
+    public void refresh() {
+        try {
+            for (UserRepository.TokenVersion version : userRepository.findRevokedTokenVersions()) {
+                versions.merge(version.getId(), version.getTokenVersion(), Math::max);
+            }
+            for (Long userId : deletedUserRepository.findActiveUserIds(LocalDateTime.now())) {
+                versions.put(userId, DELETED);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Token version refresh failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * token 的版本是否仍是用戶目前的版本
+     */
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        return versions.getOrDefault(userId, 0) == tokenVersion;
+    }
+
+    /**
+     * 遞增用戶的 token 版本並儲存，已簽發的 access token 全部失效
+     */
+    public User saveAndRevokeTokens(User user) {
+        int next = (user.getTokenVersion() != null ? user.getTokenVersion() : 0) + 1;
+        user.setTokenVersion(next);
+        User saved = userRepository.save(user);
+        afterCommit(() -> versions.merge(saved.getId(), next, Math::max));
+        return saved;
+    }
+
+    /**
+     * 用戶已刪除，其 token 不再有效
+     * 在刪除用戶的交易中寫入 deleted_users，保留到刪除前簽發的 access token 全部過期
+     */
+    public void revokeDeleted(Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        deletedUserRepository.save(new DeletedUser(userId, now, now.plus(Duration.ofMillis(jwtProperties.getExpiration()))));
+        afterCommit(() -> versions.put(userId, DELETED));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.subcycle.dto.LoginRequest;
 import com.subcycle.dto.RegisterRequest;
 import com.subcycle.entity.User;
 import com.subcycle.repository.UserRepository;
+import com.subcycle.security.AccessTokenRevocationService;
+import com.subcycle.security.AuthenticatedUser;
 import com.subcycle.security.JwtUtil;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -51,6 +53,9 @@ public class AuthService {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private AccessTokenRevocationService accessTokenRevocationService;
+
     /**
      * 用戶註冊
      */
@@ -141,11 +146,11 @@ public class AuthService {
             user.setLastLoginAt(LocalDateTime.now());
             userRepository.save(user);
 
-            // 生成 JWT 和 Refresh Token
-            String token = jwtUtil.generateToken(user);
-            String refreshToken = refreshTokenService.createRefreshToken(user);
+            // 建立新的登入 session，生成 Refresh Token 與屬於該 session 的 JWT
+            RefreshTokenService.IssuedToken refreshToken = refreshTokenService.createRefreshToken(user);
+            String token = accessToken(refreshToken.session());
 
-            return new AuthResponse(token, refreshToken, user.getId(), user.getEmail(), user.getName(), user.getRole());
+            return new AuthResponse(token, refreshToken.refreshToken(), user.getId(), user.getEmail(), user.getName(), user.getRole());
 
         } catch (AuthenticationException e) {
             AuthResponse errorResponse = new AuthResponse();
@@ -156,22 +161,37 @@ public class AuthService {
 
     /**
      * 使用 Refresh Token 獲取新的 Access Token
+     * Refresh Token 每次使用後即輪換，回應中的 refreshToken 為新的 token，舊的不再有效
      */
     public AuthResponse refreshAccessToken(String refreshTokenString) {
-        com.subcycle.entity.RefreshToken refreshToken = refreshTokenService.verifyRefreshToken(refreshTokenString);
+        RefreshTokenService.IssuedToken refreshToken = refreshTokenService.rotateRefreshToken(refreshTokenString);
+        RefreshTokenCache.Entry session = refreshToken.session();
 
-        User user = refreshToken.getUser();
+        String newAccessToken = accessToken(session);
 
-        String newAccessToken = jwtUtil.generateToken(user);
+        return new AuthResponse(newAccessToken, refreshToken.refreshToken(), session.userId(), session.email(), session.name(), session.role());
+    }
 
-        return new AuthResponse(newAccessToken, refreshTokenString, user.getId(), user.getEmail(), user.getName(), user.getRole());
+    private String accessToken(RefreshTokenCache.Entry session) {
+        return jwtUtil.generateToken(session.userId(), session.email(), session.role(), session.tokenVersion(),
+                session.sessionId());
     }
 
     /**
-     * 登出 - 撤銷 Refresh Token
+     * 登出 - 撤銷目前裝置的 Refresh Token 與目前的 Access Token
+     * 未帶 session 的舊版 token 撤銷用戶所有的 Refresh Token
      */
-    public Map<String, Object> logout(User user) {
-        refreshTokenService.revokeRefreshToken(user);
+    public Map<String, Object> logout(User user, Object principal) {
+        if (principal instanceof AuthenticatedUser authenticatedUser) {
+            if (authenticatedUser.sessionId() != null) {
+                refreshTokenService.revokeSession(user, authenticatedUser.sessionId());
+            } else {
+                refreshTokenService.revokeRefreshToken(user);
+            }
+            accessTokenRevocationService.revoke(authenticatedUser.tokenId(), authenticatedUser.tokenExpiresAt());
+        } else {
+            refreshTokenService.revokeRefreshToken(user);
+        }
         return Map.of("success", true, "message", "登出成功");
     }
 
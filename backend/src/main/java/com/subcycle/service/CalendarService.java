@@ -0,0 +1,112 @@
+package com.subcycle.service;
+
+import com.subcycle.dto.CalendarOccurrences;
+import com.subcycle.entity.Category;
+import com.subcycle.entity.Money;
+import com.subcycle.entity.Subscription;
+import com.subcycle.entity.User;
+import com.subcycle.repository.SubscriptionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 行事曆服務
+ * 在伺服器端展開指定區間內的扣款事件，依日期分組並附上每日合計
+ */
+@Service
+public class CalendarService {
+
+    public static final int MAX_RANGE_DAYS = 366;
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
+    @Autowired
+    private ExchangeRateService exchangeRateService;
+
+    /**
+     * 展開 [from, to] 區間內的所有扣款
+     * 只查詢起訖日與區間重疊的訂閱，扣款事件依日期順序逐筆產生並直接分組，不先展開成完整列表。
+     */
+    public CalendarOccurrences getOccurrences(User user, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "結束日不可早於起始日");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "查詢區間不可超過 " + MAX_RANGE_DAYS + " 天");
+        }
+
+        String currency = Money.currencyCode(user.getCurrency());
+        List<Subscription> subscriptions = subscriptionRepository.findActiveInRangeWithCategory(user, from, to);
+
+        // 每個訂閱的換算金額（最小單位）與明細只建立一次，同一訂閱的多次扣款共用
+        int size = subscriptions.size();
+        long[] convertedMinor = new long[size];
+        CalendarOccurrences.Charge[] charges = new CalendarOccurrences.Charge[size];
+        for (int i = 0; i < size; i++) {
+            Subscription sub = subscriptions.get(i);
+            Money price = Money.of(sub.getPrice(), sub.getCurrency());
+            convertedMinor[i] = exchangeRateService.convert(price, currency).getMinorUnits();
+            Category category = sub.getCategory();
+            charges[i] = new CalendarOccurrences.Charge(
+                    sub.getId(),
+                    sub.getName(),
+                    sub.getPrice(),
+                    price.getCurrency(),
+                    sub.getBillingCycle() != null ? sub.getBillingCycle().getCode() : null,
+                    category != null ? category.getId() : null,
+                    category != null ? category.getColor() : null
+            );
+        }
+
+        List<CalendarOccurrences.DayOccurrences> days = new ArrayList<>();
+        long total = 0;
+        int paymentCount = 0;
+
+        LocalDate currentDay = null;
+        long dayTotal = 0;
+        List<CalendarOccurrences.Charge> dayCharges = null;
+
+        Iterator<PaymentOccurrences.Occurrence> occurrences = PaymentOccurrences.merge(subscriptions, from, to, LocalDate.now());
+        while (occurrences.hasNext()) {
+            PaymentOccurrences.Occurrence occurrence = occurrences.next();
+            if (!occurrence.date().equals(currentDay)) {
+                if (currentDay != null) {
+                    days.add(toDay(currentDay, dayTotal, dayCharges, currency));
+                }
+                currentDay = occurrence.date();
+                dayTotal = 0;
+                dayCharges = new ArrayList<>();
+            }
+            dayTotal += convertedMinor[occurrence.index()];
+            dayCharges.add(charges[occurrence.index()]);
+            total += convertedMinor[occurrence.index()];
+            paymentCount++;
+        }
+        if (currentDay != null) {
+            days.add(toDay(currentDay, dayTotal, dayCharges, currency));
+        }
+
+        return new CalendarOccurrences(
+                from.toString(),
+                to.toString(),
+                currency,
+                Money.ofMinor(total, currency).toBigDecimal(),
+                paymentCount,
+                days
+        );
+    }
+
+    private static CalendarOccurrences.DayOccurrences toDay(LocalDate date, long totalMinor,
+                                                           List<CalendarOccurrences.Charge> charges, String currency) {
+        return new CalendarOccurrences.DayOccurrences(date.toString(), Money.ofMinor(totalMinor, currency).toBigDecimal(), charges);
+    }
+}
@@ -1,19 +1,23 @@
 package com.subcycle.service;
 
 import com.subcycle.dto.DashboardStatistics;
+import com.subcycle.dto.TopSubscriptionMetric;
+import com.subcycle.entity.BillingCycle;
+import com.subcycle.entity.Money;
 import com.subcycle.entity.Subscription;
 import com.subcycle.entity.User;
 import com.subcycle.repository.SubscriptionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.YearMonth;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * 儀表板統計服務
@@ -21,89 +25,160 @@ import java.util.stream.Collectors;
 @Service
 public class DashboardService {
 
+    private static final int MAX_TOP_LIMIT = 50;
+
     @Autowired
     private SubscriptionRepository subscriptionRepository;
 
+    @Autowired
+    private DashboardStatisticsCache statisticsCache;
+
+    @Autowired
+    private ExchangeRateService exchangeRateService;
+
+    @Autowired
+    private PaymentLedgerService paymentLedgerService;
+
     /**
-     * 獲取儀表板統計數據
+     * 獲取儀表板統計數據（依用戶與當天日期快取）
      */
     public DashboardStatistics getDashboardStatistics(User user) {
+        LocalDate today = LocalDate.now();
+        DashboardStatistics cached = statisticsCache.get(user.getId(), today);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = statisticsCache.generation();
+        DashboardStatistics stats = computeDashboardStatistics(user);
+        statisticsCache.put(user.getId(), today, stats, generation);
+        return stats;
+    }
+
+    /**
+     * 計算儀表板統計數據
+     * 內部以 Money（long 最小單位）累加，只在寫入 DashboardStatistics 時轉為 BigDecimal；
+     * 各幣別先以原幣別加總，再依匯率快照換算為用戶偏好幣別。
+     */
+    private DashboardStatistics computeDashboardStatistics(User user) {
         List<Subscription> subscriptions = subscriptionRepository.findByUser(user);
+        String currency = Money.currencyCode(user.getCurrency());
 
         DashboardStatistics stats = new DashboardStatistics();
+        stats.setCurrency(currency);
+
+        LocalDate now = LocalDate.now();
+        YearMonth currentMonth = YearMonth.from(now);
+        YearMonth lastMonth = currentMonth.minusMonths(1);
+
+        Money monthlyAverage = Money.zero(currency);
+        Money next30DaysTotal = Money.zero(currency);
+        Money currentMonthPaid = Money.zero(currency);
+        Money currentMonthTotal = Money.zero(currency);
+        Money lastMonthTotal = Money.zero(currency);
+        List<DashboardStatistics.CurrencySubtotal> subtotals = new ArrayList<>();
+
+        for (Map.Entry<String, List<Subscription>> group : groupByCurrency(subscriptions).entrySet()) {
+            String code = group.getKey();
+            List<Subscription> members = group.getValue();
+            Money groupMonthlyAverage = calculateMonthlyAverage(members, code);
+            Money groupCurrentMonthTotal = calculateMonthPayments(members, currentMonth, false, code);
+
+            Money convertedMonthlyAverage = exchangeRateService.convert(groupMonthlyAverage, currency);
+            Money convertedCurrentMonthTotal = exchangeRateService.convert(groupCurrentMonthTotal, currency);
+            monthlyAverage = monthlyAverage.plus(convertedMonthlyAverage);
+            currentMonthTotal = currentMonthTotal.plus(convertedCurrentMonthTotal);
+            next30DaysTotal = next30DaysTotal.plus(
+                exchangeRateService.convert(calculateNext30DaysTotal(members, code), currency));
+            currentMonthPaid = currentMonthPaid.plus(
+                exchangeRateService.convert(calculateMonthPayments(members, currentMonth, true, code), currency));
+
+            subtotals.add(new DashboardStatistics.CurrencySubtotal(
+                code,
+                members.size(),
+                groupMonthlyAverage.toBigDecimal(),
+                groupCurrentMonthTotal.toBigDecimal(),
+                exchangeRateService.getRate(code, currency),
+                convertedMonthlyAverage.toBigDecimal(),
+                convertedCurrentMonthTotal.toBigDecimal()
+            ));
+        }
+        stats.setCurrencySubtotals(subtotals);
+
+        // 上月已發生的扣款直接由扣款紀錄加總
+        for (Money amount : paymentLedgerService.getPastMonthTotals(user, subscriptions, lastMonth, now).values()) {
+            lastMonthTotal = lastMonthTotal.plus(exchangeRateService.convert(amount, currency));
+        }
 
         // 基本統計
         stats.setTotalSubscriptions(subscriptions.size());
-        stats.setMonthlyAverage(calculateMonthlyAverage(subscriptions));
-        stats.setNext30DaysTotal(calculateNext30DaysTotal(subscriptions));
+        stats.setMonthlyAverage(monthlyAverage.toBigDecimal());
+        stats.setNext30DaysTotal(next30DaysTotal.toBigDecimal());
 
         // 本月統計
-        LocalDate now = LocalDate.now();
-        YearMonth currentMonth = YearMonth.from(now);
-        stats.setCurrentMonthPaid(calculateMonthPayments(subscriptions, currentMonth, true));
-        stats.setCurrentMonthTotal(calculateMonthPayments(subscriptions, currentMonth, false));
-        stats.setCurrentMonthRemaining(stats.getCurrentMonthTotal().subtract(stats.getCurrentMonthPaid()));
+        stats.setCurrentMonthPaid(currentMonthPaid.toBigDecimal());
+        stats.setCurrentMonthTotal(currentMonthTotal.toBigDecimal());
+        stats.setCurrentMonthRemaining(currentMonthTotal.minus(currentMonthPaid).toBigDecimal());
 
         // 計算進度百分比
-        if (stats.getCurrentMonthTotal().compareTo(BigDecimal.ZERO) > 0) {
-            stats.setCurrentMonthProgress(
-                stats.getCurrentMonthPaid()
-                    .divide(stats.getCurrentMonthTotal(), 4, RoundingMode.HALF_UP)
-                    .multiply(BigDecimal.valueOf(100))
-                    .doubleValue()
-            );
-        } else {
-            stats.setCurrentMonthProgress(0.0);
-        }
+        stats.setCurrentMonthProgress(
+            currentMonthTotal.signum() > 0 ? currentMonthPaid.percentOf(currentMonthTotal) : 0.0
+        );
 
         // 上月統計（環比數據）
-        YearMonth lastMonth = currentMonth.minusMonths(1);
-        stats.setLastMonthTotal(calculateMonthPayments(subscriptions, lastMonth, false));
-        stats.setMonthOverMonthChange(stats.getCurrentMonthTotal().subtract(stats.getLastMonthTotal()));
+        Money monthOverMonthChange = currentMonthTotal.minus(lastMonthTotal);
+        stats.setLastMonthTotal(lastMonthTotal.toBigDecimal());
+        stats.setMonthOverMonthChange(monthOverMonthChange.toBigDecimal());
 
         // 環比變化百分比
-        if (stats.getLastMonthTotal().compareTo(BigDecimal.ZERO) > 0) {
-            stats.setMonthOverMonthChangePercent(
-                stats.getMonthOverMonthChange()
-                    .divide(stats.getLastMonthTotal(), 4, RoundingMode.HALF_UP)
-                    .multiply(BigDecimal.valueOf(100))
-                    .doubleValue()
-            );
-        } else {
-            stats.setMonthOverMonthChangePercent(0.0);
-        }
+        stats.setMonthOverMonthChangePercent(
+            lastMonthTotal.signum() > 0 ? monthOverMonthChange.percentOf(lastMonthTotal) : 0.0
+        );
 
         // Top 5 訂閱（按本月花費排序）
-        stats.setTopSubscriptions(getTopSubscriptions(subscriptions, 5));
+        stats.setTopSubscriptions(getTopSubscriptions(subscriptions, 5, TopSubscriptionMetric.MONTHLY_COST, currency));
 
         return stats;
     }
 
     /**
-     * 計算月均支出
+     * 依訂閱幣別分組（保持原始順序）
+     */
+    private Map<String, List<Subscription>> groupByCurrency(List<Subscription> subscriptions) {
+        Map<String, List<Subscription>> groups = new LinkedHashMap<>();
+        for (Subscription sub : subscriptions) {
+            groups.computeIfAbsent(Money.currencyCode(sub.getCurrency()), code -> new ArrayList<>()).add(sub);
+        }
+        return groups;
+    }
+
+    /**
+     * 計算月均支出（各訂閱的月均金額保留額外小數，加總後再捨入）
      */
-    private BigDecimal calculateMonthlyAverage(List<Subscription> subscriptions) {
+    private Money calculateMonthlyAverage(List<Subscription> subscriptions, String currency) {
         LocalDate now = LocalDate.now();
+        Money total = Money.zero(currency);
+        Money precise = total.withScale(total.getScale() + 2);
 
-        return subscriptions.stream()
-            .filter(sub -> {
-                LocalDate endDate = sub.getEndDate();
-                LocalDate startDate = sub.getStartDate();
-                // 如果設定了到期日，且已經過期，則不計入月均支出
-                if (endDate != null && endDate.isBefore(now)) {
-                    return false;
-                }
-                return startDate == null || !startDate.isAfter(now);
-            })
-            .map(this::getMonthlyAmount)
-            .reduce(BigDecimal.ZERO, BigDecimal::add)
-            .setScale(2, RoundingMode.HALF_UP);
+        for (Subscription sub : subscriptions) {
+            LocalDate endDate = sub.getEndDate();
+            LocalDate startDate = sub.getStartDate();
+            // 如果設定了到期日，且已經過期，則不計入月均支出
+            if (endDate != null && endDate.isBefore(now)) {
+                continue;
+            }
+            if (startDate == null || !startDate.isAfter(now)) {
+                precise = precise.plus(getMonthlyAmount(sub, currency));
+            }
+        }
+
+        return precise.withScale(total.getScale());
     }
 
     /**
      * 計算下個月應付總額
      */
-    private BigDecimal calculateNext30DaysTotal(List<Subscription> subscriptions) {
+    private Money calculateNext30DaysTotal(List<Subscription> subscriptions, String currency) {
         LocalDate now = LocalDate.now();
         YearMonth nextMonth = YearMonth.from(now).plusMonths(1);
         LocalDate nextMonthStart = nextMonth.atDay(1);
@@ -132,9 +207,8 @@ public class DashboardService {
                 // 計算下個月（從下個月1日到下個月最後一天）的所有付款
                 return !nextPayment.isBefore(nextMonthStart) && !nextPayment.isAfter(nextMonthEnd);
             })
-            .map(Subscription::getPrice)
-            .reduce(BigDecimal.ZERO, BigDecimal::add)
-            .setScale(2, RoundingMode.HALF_UP);
+            .map(sub -> Money.of(sub.getPrice(), currency))
+            .reduce(Money.zero(currency), Money::plus);
     }
 
     /**
@@ -143,145 +217,202 @@ public class DashboardService {
      * @param month 目標月份
      * @param onlyPast 是否只計算已過去的扣款（true=已支出，false=預計總支出）
      */
-    private BigDecimal calculateMonthPayments(List<Subscription> subscriptions, YearMonth month, boolean onlyPast) {
+    private Money calculateMonthPayments(List<Subscription> subscriptions, YearMonth month, boolean onlyPast,
+                                         String currency) {
         LocalDate monthStart = month.atDay(1);
         LocalDate monthEnd = month.atEndOfMonth();
         LocalDate now = LocalDate.now();
 
-        BigDecimal total = BigDecimal.ZERO;
+        long total = 0;
 
         for (Subscription sub : subscriptions) {
-            LocalDate nextPayment = sub.getNextPaymentDate();
-            LocalDate endDate = sub.getEndDate();
-            LocalDate startDate = sub.getStartDate();
-            Boolean includeHistorical = sub.getIncludeHistoricalPayments();
-            if (nextPayment == null) continue;
-            if (startDate != null && startDate.isAfter(monthEnd)) continue;
-
-            // 從下次扣款日期開始計算
-            LocalDate currentDate = nextPayment;
-
-            // 如果不包含歷史支出，且該月在今天之前，跳過
-            if (Boolean.FALSE.equals(includeHistorical) && monthEnd.isBefore(now)) {
-                continue;
-            }
-
-            // 往前推到月初之前
-            while (currentDate.isAfter(monthStart)) {
-                currentDate = getPreviousPaymentDate(currentDate, sub.getBillingCycle());
-            }
-
-            // 從月初往後計算所有在該月的扣款
-            while (currentDate.isBefore(monthEnd.plusDays(1))) {
-                if (!currentDate.isBefore(monthStart) && !currentDate.isAfter(monthEnd)) {
-                    LocalDate paymentDate = currentDate;
-
-                    // 如果這筆扣款在 startDate 之前，檢查是否需要調整到 startDate
-                    if (startDate != null && currentDate.isBefore(startDate)) {
-                        LocalDate nextPaymentDate = getNextPaymentDate(currentDate, sub.getBillingCycle());
-                        if (nextPaymentDate.isAfter(startDate)) {
-                            // 這是跨越 startDate 的扣款，調整到 startDate
-                            paymentDate = startDate;
-                        } else {
-                            // 還沒到 startDate，跳過
-                            currentDate = getNextPaymentDate(currentDate, sub.getBillingCycle());
-                            continue;
-                        }
-                    }
-
-                    // 檢查是否超過到期日
-                    boolean isAfterEndDate = endDate != null && paymentDate.isAfter(endDate);
-
-                    // 如果沒有超過到期日，才計入
-                    if (!isAfterEndDate && !paymentDate.isBefore(monthStart) && !paymentDate.isAfter(monthEnd)) {
-                        // 如果不包含歷史支出，只計算今天之後的扣款
-                        if (Boolean.FALSE.equals(includeHistorical) && paymentDate.isBefore(now)) {
-                            currentDate = getNextPaymentDate(currentDate, sub.getBillingCycle());
-                            continue;
-                        }
-
-                        // 如果是計算已支出，只計算今天之前的
-                        if (!onlyPast || !paymentDate.isAfter(now)) {
-                            total = total.add(sub.getPrice());
-                        }
-                    }
-                }
-                currentDate = getNextPaymentDate(currentDate, sub.getBillingCycle());
+            long count = countMonthPayments(sub, monthStart, monthEnd, now, onlyPast);
+            if (count > 0) {
+                long price = Money.of(sub.getPrice(), currency).getMinorUnits();
+                total = Math.addExact(total, Math.multiplyExact(price, count));
             }
         }
 
-        return total.setScale(2, RoundingMode.HALF_UP);
+        return Money.ofMinor(total, currency);
     }
 
     /**
-     * 獲取下次扣款日期
+     * 計算單一訂閱在指定月份內符合條件的扣款次數
+     * 先從下次扣款日往前推到月初（含）之前，再從該日期往後計算該月的扣款
      */
-    private LocalDate getNextPaymentDate(LocalDate current, String cycle) {
-        return switch (cycle.toLowerCase()) {
-            case "daily" -> current.plusDays(1);
-            case "weekly" -> current.plusWeeks(1);
-            case "monthly" -> current.plusMonths(1);
-            case "quarterly" -> current.plusMonths(3);
-            case "yearly" -> current.plusYears(1);
-            default -> current.plusMonths(1);
-        };
+    private long countMonthPayments(Subscription sub, LocalDate monthStart, LocalDate monthEnd,
+                                    LocalDate now, boolean onlyPast) {
+        LocalDate nextPayment = sub.getNextPaymentDate();
+        LocalDate startDate = sub.getStartDate();
+        LocalDate endDate = sub.getEndDate();
+        boolean excludeHistorical = Boolean.FALSE.equals(sub.getIncludeHistoricalPayments());
+        if (nextPayment == null) return 0;
+        if (startDate != null && startDate.isAfter(monthEnd)) return 0;
+
+        // 如果不包含歷史支出，且該月在今天之前，跳過
+        if (excludeHistorical && monthEnd.isBefore(now)) {
+            return 0;
+        }
+
+        BillingCycle cycle = BillingCycle.orMonthly(sub.getBillingCycle());
+        LocalDate anchor = cycle.advance(nextPayment, -cycle.stepsBackOnOrBefore(nextPayment, monthStart));
+
+        // 計入區間：該月內、不早於 startDate、不晚於到期日，並依歷史 / 已支出條件限制今天前後
+        LocalDate from = monthStart;
+        LocalDate to = monthEnd;
+        if (startDate != null && startDate.isAfter(from)) from = startDate;
+        if (excludeHistorical && now.isAfter(from)) from = now;
+        if (endDate != null && endDate.isBefore(to)) to = endDate;
+        if (onlyPast && now.isBefore(to)) to = now;
+
+        long count = cycle.countBetween(anchor, from, to);
+
+        // 跨越 startDate 的扣款（前一次在月內且早於 startDate）調整到 startDate 計入
+        if (startDate != null && startDate.isAfter(monthStart)) {
+            long steps = cycle.stepsOnOrAfter(anchor, startDate);
+            boolean onStartDate = cycle.advance(anchor, steps).equals(startDate);
+            if (!onStartDate && steps > 0
+                    && !cycle.advance(anchor, steps - 1).isBefore(monthStart)
+                    && !startDate.isBefore(from) && !startDate.isAfter(to)) {
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
-     * 獲取上次扣款日期
+     * 轉換為月均金額（保留兩位額外小數）
      */
-    private LocalDate getPreviousPaymentDate(LocalDate current, String cycle) {
-        return switch (cycle.toLowerCase()) {
-            case "daily" -> current.minusDays(1);
-            case "weekly" -> current.minusWeeks(1);
-            case "monthly" -> current.minusMonths(1);
-            case "quarterly" -> current.minusMonths(3);
-            case "yearly" -> current.minusYears(1);
-            default -> current.minusMonths(1);
-        };
+    private Money getMonthlyAmount(Subscription sub, String currency) {
+        BillingCycle cycle = BillingCycle.orMonthly(sub.getBillingCycle());
+        return cycle.toMonthlyAmount(Money.of(sub.getPrice(), currency));
     }
 
     /**
-     * 轉換為月均金額
+     * 獲取排名最高的訂閱
+     * 每個訂閱的本月花費只計算一次並存入以索引對應的 long 陣列（以分為單位），
+     * 再以大小為 limit 的最小堆選出前 N 名。
+     * @param metric 排名依據（本月花費、年化花費、最近扣款日）
      */
-    private BigDecimal getMonthlyAmount(Subscription sub) {
-        BigDecimal price = sub.getPrice();
-        return switch (sub.getBillingCycle().toLowerCase()) {
-            case "daily" -> price.multiply(BigDecimal.valueOf(30));
-            case "weekly" -> price.multiply(BigDecimal.valueOf(4.33));
-            case "monthly" -> price;
-            case "quarterly" -> price.divide(BigDecimal.valueOf(3), 2, RoundingMode.HALF_UP);
-            case "yearly" -> price.divide(BigDecimal.valueOf(12), 2, RoundingMode.HALF_UP);
-            default -> price;
-        };
+    public List<DashboardStatistics.TopSubscription> getTopSubscriptions(User user, int limit, TopSubscriptionMetric metric) {
+        if (limit < 1 || limit > MAX_TOP_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit 必須在 1-" + MAX_TOP_LIMIT + " 之間");
+        }
+        return getTopSubscriptions(subscriptionRepository.findByUser(user), limit, metric,
+                Money.currencyCode(user.getCurrency()));
     }
 
-    /**
-     * 獲取支出最高的訂閱
-     */
-    private List<DashboardStatistics.TopSubscription> getTopSubscriptions(List<Subscription> subscriptions, int limit) {
+    private List<DashboardStatistics.TopSubscription> getTopSubscriptions(List<Subscription> subscriptions, int limit,
+                                                                        TopSubscriptionMetric metric, String currency) {
         LocalDate now = LocalDate.now();
         YearMonth currentMonth = YearMonth.from(now);
+        LocalDate monthStart = currentMonth.atDay(1);
+        LocalDate monthEnd = currentMonth.atEndOfMonth();
 
-        return subscriptions.stream()
-            // 過濾已過期的訂閱
-            .filter(sub -> {
-                LocalDate endDate = sub.getEndDate();
-                // 如果設定了到期日且已經過期，則不列入 Top 5
-                return endDate == null || !endDate.isBefore(now);
-            })
-            .sorted(Comparator.comparing(
-                sub -> calculateMonthPayments(List.of(sub), currentMonth, false),
-                Comparator.reverseOrder()
-            ))
-            .limit(limit)
-            .map(sub -> new DashboardStatistics.TopSubscription(
+        // 過濾已過期的訂閱（設定了到期日且已經過期，則不列入排名）
+        List<Subscription> candidates = new ArrayList<>(subscriptions.size());
+        for (Subscription sub : subscriptions) {
+            LocalDate endDate = sub.getEndDate();
+            if (endDate == null || !endDate.isBefore(now)) {
+                candidates.add(sub);
+            }
+        }
+
+        int size = candidates.size();
+        Money[] monthCosts = new Money[size];
+        long[] keys = new long[size];
+        boolean[] eligible = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            Subscription sub = candidates.get(i);
+            long count = countMonthPayments(sub, monthStart, monthEnd, now, false);
+            String subCurrency = Money.currencyCode(sub.getCurrency());
+            monthCosts[i] = Money.of(sub.getPrice(), subCurrency).times(count);
+            eligible[i] = true;
+            // 金額類排名一律換算為用戶幣別後比較
+            switch (metric) {
+                case MONTHLY_COST -> keys[i] = exchangeRateService.convert(monthCosts[i], currency).getMinorUnits();
+                case ANNUAL_COST -> keys[i] = exchangeRateService.convert(getMonthlyAmount(sub, subCurrency).times(12)
+                        .withScale(monthCosts[i].getScale()), currency).getMinorUnits();
+                case NEXT_CHARGE -> {
+                    // 越早扣款排名越前，沒有下次扣款日則不列入
+                    LocalDate nextPayment = sub.getNextPaymentDate();
+                    eligible[i] = nextPayment != null;
+                    keys[i] = nextPayment != null ? -nextPayment.toEpochDay() : Long.MIN_VALUE;
+                }
+            }
+        }
+
+        int[] top = selectTop(keys, eligible, limit);
+        List<DashboardStatistics.TopSubscription> result = new ArrayList<>(top.length);
+        for (int index : top) {
+            Subscription sub = candidates.get(index);
+            result.add(new DashboardStatistics.TopSubscription(
                 sub.getId(),
                 sub.getName(),
                 sub.getPrice(),
-                sub.getBillingCycle(),
-                calculateMonthPayments(List.of(sub), currentMonth, false)
-            ))
-            .collect(Collectors.toList());
+                sub.getBillingCycle() != null ? sub.getBillingCycle().getCode() : null,
+                monthCosts[index].toBigDecimal(),
+                monthCosts[index].getCurrency()
+            ));
+        }
+        return result;
+    }
+
+    /**
+     * 以最小堆選出 key 最大的 limit 個索引（同分時保留原始順序），依排名由高到低返回
+     */
+    private static int[] selectTop(long[] keys, boolean[] eligible, int limit) {
+        int[] heap = new int[Math.min(limit, keys.length)];
+        int heapSize = 0;
+
+        for (int i = 0; i < keys.length; i++) {
+            if (!eligible[i]) continue;
+            if (heapSize < heap.length) {
+                heap[heapSize] = i;
+                siftUp(heap, heapSize++, keys);
+            } else if (ranksHigher(i, heap[0], keys)) {
+                heap[0] = i;
+                siftDown(heap, heapSize, keys);
+            }
+        }
+
+        // 依序取出堆頂（排名最低者）由後往前填入
+        int[] result = new int[heapSize];
+        for (int n = heapSize - 1; n >= 0; n--) {
+            result[n] = heap[0];
+            heap[0] = heap[n];
+            siftDown(heap, n, keys);
+        }
+        return result;
+    }
+
+    private static boolean ranksHigher(int a, int b, long[] keys) {
+        return keys[a] != keys[b] ? keys[a] > keys[b] : a < b;
+    }
+
+    private static void siftUp(int[] heap, int pos, long[] keys) {
+        int item = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!ranksHigher(heap[parent], item, keys)) break;
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = item;
+    }
+
+    private static void siftDown(int[] heap, int size, long[] keys) {
+        if (size == 0) return;
+        int pos = 0;
+        int item = heap[0];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) break;
+            if (child + 1 < size && ranksHigher(heap[child], heap[child + 1], keys)) child++;
+            if (!ranksHigher(item, heap[child], keys)) break;
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = item;
     }
 }
@@ -0,0 +1,179 @@
+package com.subcycle.service;
+
+import com.subcycle.dto.DashboardStatistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 儀表板統計快取
+ * 以用戶 ID 為鍵，並記錄計算當天的日期；跨日或過期即視為未命中，
+ * 訂閱異動與推進扣款日時由呼叫端主動失效。
+ * 在交易中失效時延到交易提交後才移除；另以失效序號擋下在失效前開始計算、失效後才寫入的舊資料：
+ * 呼叫端計算前先取得 generation()，寫入時若該用戶在此之後被失效則不寫入。
+ */
+@Component
+public class DashboardStatisticsCache {
+
+    private final Map<Long, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 失效序號：每次失效遞增，記錄各用戶最後一次失效與最後一次全部失效時的序號
+     */
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, Long> invalidatedAt = new ConcurrentHashMap<>();
+    private volatile long clearedAt;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Value("${dashboard.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${dashboard.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    /**
+     * 取得快取的統計數據，未命中時返回 null
+     */
+    public DashboardStatistics get(Long userId, LocalDate date) {
+        Entry entry = cache.get(userId);
+        if (entry == null || !entry.date().equals(date) || entry.isExpired(System.nanoTime())) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.statistics();
+    }
+
+    /**
+     * 目前的失效序號，計算統計數據前取得，寫入時傳給 put
+     */
+    public long generation() {
+        return sequence.get();
+    }
+
+    /**
+     * 寫入快取，超過容量時先清除過期項目，仍不足則淘汰最早到期的項目
+     * 該用戶在 generation 之後被失效時不寫入（計算時讀到的可能是失效前的資料）
+     * @return 是否寫入
+     */
+    public boolean put(Long userId, LocalDate date, DashboardStatistics statistics, long generation) {
+        if (cache.size() >= maxEntries && !cache.containsKey(userId)) {
+            evict();
+        }
+        long expiresAt = System.nanoTime() + ttlSeconds * 1_000_000_000L;
+        Entry entry = new Entry(date, statistics, expiresAt);
+        // 檢查與寫入在同一個 compute 中，與 invalidate 對同一鍵的 compute 互斥
+        return cache.compute(userId, (id, current) -> isStale(id, generation) ? current : entry) == entry;
+    }
+
+    /**
+     * 使單一用戶的快取失效
+     */
+    public void invalidate(Long userId) {
+        if (userId != null) {
+            afterCommit(() -> remove(userId));
+        }
+    }
+
+    /**
+     * 使多個用戶的快取失效
+     */
+    public void invalidateAll(Collection<Long> userIds) {
+        List<Long> ids = List.copyOf(userIds);
+        afterCommit(() -> ids.forEach(this::remove));
+    }
+
+    /**
+     * 使所有用戶的快取失效（例如匯率更新後）
+     */
+    public void invalidateAll() {
+        afterCommit(() -> {
+            long cleared = sequence.incrementAndGet();
+            clearedAt = cleared;
+            // 早於全部失效的個別序號不再需要；並行失效取得的較新序號保留
+            invalidatedAt.values().removeIf(stamp -> stamp <= cleared);
+            cache.clear();
+        });
+    }
+
+    private void remove(Long userId) {
+        cache.compute(userId, (id, current) -> {
+            invalidatedAt.put(id, sequence.incrementAndGet());
+            return null;
+        });
+    }
+
+    private boolean isStale(Long userId, long generation) {
+        return clearedAt > generation || invalidatedAt.getOrDefault(userId, 0L) > generation;
+    }
+
+    /**
+     * 快取命中統計
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        return Map.of(
+                "size", cache.size(),
+                "maxEntries", maxEntries,
+                "hits", hitCount,
+                "misses", missCount,
+                "evictions", evictions.sum(),
+                "hitRate", total > 0 ? (double) hitCount / total : 0.0
+        );
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        cache.entrySet().removeIf(e -> {
+            boolean expired = e.getValue().isExpired(now);
+            if (expired) {
+                evictions.increment();
+            }
+            return expired;
+        });
+
+        if (cache.size() >= maxEntries) {
+            cache.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().expiresAt()))
+                    .ifPresent(oldest -> {
+                        if (cache.remove(oldest.getKey(), oldest.getValue())) {
+                            evictions.increment();
+                        }
+                    });
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private record Entry(LocalDate date, DashboardStatistics statistics, long expiresAt) {
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.subcycle.service;
+
+import com.subcycle.entity.EmailOutbox;
+import com.subcycle.repository.EmailOutboxRepository;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 郵件寄送工作
+ * 固定數量的工作執行緒輪詢 email_outbox，以 FOR UPDATE SKIP LOCKED 取出到期的郵件，
+ * 取出後即提交交易，SMTP 寄送不佔用資料庫交易；多個執行緒或節點同時取出時不會拿到同一封。
+ * 每批郵件（達到 batch-size 或等待 batch-window-ms 後）以同一個 SMTP 連線寄出，
+ * 失敗依郵件個別記錄，依指數退避重試，超過次數上限標記為 DEAD。
+ * 寄送速率以 token bucket 限制（每個節點各自計算），沒有額度時不取出郵件；
+ * 並記錄最近郵件的寄送延遲（實際寄出時間 - 預定寄送時間）百分位數。
+ */
+@Service
+@Slf4j
+public class EmailOutboxService {
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${email.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${email.outbox.workers:2}")
+    private int workers;
+
+    @Value("${email.outbox.batch-size:50}")
+    private int batchSize;
+
+    /**
+     * 取出的郵件不足一批時，最多再等待的時間，讓同一個連線寄出更多郵件
+     */
+    @Value("${email.outbox.batch-window-ms:200}")
+    private long batchWindowMillis;
+
+    @Value("${email.outbox.poll-interval-ms:1000}")
+    private long pollIntervalMillis;
+
+    @Value("${email.outbox.max-attempts:6}")
+    private int maxAttempts;
+
+    @Value("${email.outbox.backoff-base-ms:30000}")
+    private long backoffBaseMillis;
+
+    @Value("${email.outbox.backoff-max-ms:3600000}")
+    private long backoffMaxMillis;
+
+    /**
+     * 取出後未回報結果（例如節點中斷）時，逾時可再被取出
+     */
+    @Value("${email.outbox.claim-timeout-ms:300000}")
+    private long claimTimeoutMillis;
+
+    /**
+     * 每秒可寄出的郵件數，0 表示不限速
+     */
+    @Value("${email.outbox.rate-per-second:10}")
+    private int ratePerSecond;
+
+    /**
+     * 可累積的額度上限（閒置後最多一次寄出的數量）
+     */
+    @Value("${email.outbox.burst:50}")
+    private int burst;
+
+    /**
+     * 計算寄送延遲百分位數的樣本數
+     */
+    @Value("${email.outbox.lag-samples:10000}")
+    private int lagSamples;
+
+    private Bucket bucket;
+    private LagWindow sendLag;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder dead = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchMillis = new LongAdder();
+    private final LongAdder throttledMillis = new LongAdder();
+
+    private long currentMinute;
+    private long currentMinuteSent;
+    private long previousMinuteSent;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    @PostConstruct
+    void init() {
+        if (ratePerSecond > 0) {
+            bucket = Bucket.builder()
+                    .addLimit(Bandwidth.builder()
+                            .capacity(Math.max(1, burst))
+                            .refillGreedy(ratePerSecond, Duration.ofSeconds(1))
+                            .build())
+                    .build();
+        }
+        sendLag = new LagWindow(lagSamples);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < Math.max(1, workers); i++) {
+            threads.add(Thread.ofPlatform().name("email-outbox-" + i).daemon().start(this::work));
+        }
+        log.info("Email outbox: started {} workers, batch size {}, rate limit {}/s", threads.size(), batchSize,
+                bucket != null ? ratePerSecond : "none");
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        threads.forEach(Thread::interrupt);
+        threads.clear();
+    }
+
+    private void work() {
+        while (running) {
+            try {
+                if (processBatch() == 0) {
+                    Thread.sleep(pollIntervalMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Email outbox: batch failed: {}", e.getMessage());
+                try {
+                    Thread.sleep(pollIntervalMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 取出一批到期的郵件，以同一個 SMTP 連線寄出
+     * 取出筆數不超過目前的寄送額度，未用到的額度退回
+     * @return 取出筆數
+     */
+    public int processBatch() throws InterruptedException {
+        int permits = acquirePermits(batchSize);
+        List<EmailOutbox> batch = new ArrayList<>(claim(permits));
+        releasePermits(permits - batch.size());
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        long deadline = System.nanoTime() + batchWindowMillis * 1_000_000;
+        while (batch.size() < batchSize && System.nanoTime() < deadline) {
+            Thread.sleep(Math.min(50, Math.max(1, (deadline - System.nanoTime()) / 1_000_000)));
+            int more = tryAcquirePermits(batchSize - batch.size());
+            if (more > 0) {
+                List<EmailOutbox> claimed = claim(more);
+                batch.addAll(claimed);
+                releasePermits(more - claimed.size());
+            }
+        }
+
+        if (!emailService.isConfigured()) {
+            batch.forEach(email -> markDead(email, "郵件服務未配置"));
+            return batch.size();
+        }
+
+        long start = System.nanoTime();
+        send(batch);
+        batches.increment();
+        batchMillis.add((System.nanoTime() - start) / 1_000_000);
+        return batch.size();
+    }
+
+    private void send(List<EmailOutbox> batch) {
+        Map<MimeMessage, EmailOutbox> prepared = new IdentityHashMap<>();
+        List<MimeMessage> messages = new ArrayList<>(batch.size());
+        for (EmailOutbox email : batch) {
+            try {
+                MimeMessage message = emailService.prepare(email);
+                prepared.put(message, email);
+                messages.add(message);
+            } catch (Exception e) {
+                fail(email, e);
+            }
+        }
+
+        Map<Object, Exception> failures = emailService.sendBatch(messages);
+        List<EmailOutbox> sentEmails = new ArrayList<>(messages.size());
+        for (MimeMessage message : messages) {
+            EmailOutbox email = prepared.get(message);
+            Exception failure = failures.get(message);
+            if (failure != null) {
+                fail(email, failure);
+            } else {
+                sentEmails.add(email);
+            }
+        }
+        if (!sentEmails.isEmpty()) {
+            markSent(sentEmails);
+        }
+    }
+
+    /**
+     * 取得最多 wanted 個寄送額度，沒有額度時等待補充（至少取得 1 個）
+     */
+    private int acquirePermits(int wanted) throws InterruptedException {
+        if (bucket == null) {
+            return wanted;
+        }
+        long start = System.nanoTime();
+        long granted;
+        while ((granted = bucket.tryConsumeAsMuchAsPossible(wanted)) == 0) {
+            long waitNanos = bucket.estimateAbilityToConsume(1).getNanosToWaitForRefill();
+            Thread.sleep(Math.max(1, waitNanos / 1_000_000));
+        }
+        throttledMillis.add((System.nanoTime() - start) / 1_000_000);
+        return (int) granted;
+    }
+
+    /**
+     * 不等待，取得目前可用的額度
+     */
+    private int tryAcquirePermits(int wanted) {
+        return bucket == null ? wanted : (int) bucket.tryConsumeAsMuchAsPossible(wanted);
+    }
+
+    private void releasePermits(int unused) {
+        if (bucket != null && unused > 0) {
+            bucket.addTokens(unused);
+        }
+    }
+
+    private List<EmailOutbox> claim(int limit) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<EmailOutbox> batch = transaction.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = emailOutboxRepository.lockDueIds(now, limit);
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            emailOutboxRepository.markSending(ids, now.plusNanos(claimTimeoutMillis * 1_000_000));
+            return emailOutboxRepository.findAllById(ids);
+        });
+        return batch != null ? batch : List.of();
+    }
+
+    private void markSent(List<EmailOutbox> emails) {
+        LocalDateTime sentAt = LocalDateTime.now();
+        List<Long> ids = emails.stream().map(EmailOutbox::getId).toList();
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> emailOutboxRepository.markSent(ids, sentAt));
+        countSent(ids.size());
+        for (EmailOutbox email : emails) {
+            if (email.getScheduledAt() != null) {
+                sendLag.record(Math.max(0, Duration.between(email.getScheduledAt(), sentAt).toMillis()));
+            }
+        }
+    }
+
+    private void fail(EmailOutbox email, Exception e) {
+        String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        if (email.getAttempts() >= maxAttempts) {
+            log.error("Email outbox: giving up on email {} to {} after {} attempts: {}",
+                    email.getId(), email.getRecipient(), email.getAttempts(), error);
+            markDead(email, error);
+            return;
+        }
+        long delay = backoffMillis(email.getAttempts());
+        log.warn("Email outbox: email {} to {} failed (attempt {}), retrying in {} ms: {}",
+                email.getId(), email.getRecipient(), email.getAttempts(), delay, error);
+        email.setStatus(EmailOutbox.Status.PENDING);
+        email.setNextAttemptAt(LocalDateTime.now().plusNanos(delay * 1_000_000));
+        email.setLastError(truncate(error));
+        emailOutboxRepository.save(email);
+        retried.increment();
+    }
+
+    private void markDead(EmailOutbox email, String error) {
+        email.setStatus(EmailOutbox.Status.DEAD);
+        email.setLastError(truncate(error));
+        emailOutboxRepository.save(email);
+        dead.increment();
+    }
+
+    /**
+     * 第 n 次失敗後的等待時間：base * 2^(n-1)，不超過上限
+     */
+    private long backoffMillis(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 30);
+        return Math.min(backoffBaseMillis << exponent, backoffMaxMillis);
+    }
+
+    private static String truncate(String error) {
+        return error.length() > 500 ? error.substring(0, 500) : error;
+    }
+
+    private synchronized void countSent(int count) {
+        sent.add(count);
+        long minute = System.currentTimeMillis() / 60_000;
+        if (minute != currentMinute) {
+            previousMinuteSent = minute == currentMinute + 1 ? currentMinuteSent : 0;
+            currentMinute = minute;
+            currentMinuteSent = 0;
+        }
+        currentMinuteSent += count;
+    }
+
+    private synchronized long sentLastMinute() {
+        long minute = System.currentTimeMillis() / 60_000;
+        if (minute == currentMinute) {
+            return previousMinuteSent;
+        }
+        return minute == currentMinute + 1 ? currentMinuteSent : 0;
+    }
+
+    /**
+     * 最近 N 筆寄送延遲（環形緩衝）
+     */
+    private static final class LagWindow {
+
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LagWindow(int capacity) {
+            samples = new long[Math.max(1, capacity)];
+        }
+
+        synchronized void record(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            if (size < samples.length) {
+                size++;
+            }
+        }
+
+        Map<String, Object> percentiles() {
+            long[] sorted;
+            synchronized (this) {
+                sorted = Arrays.copyOf(samples, size);
+            }
+            Arrays.sort(sorted);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("samples", sorted.length);
+            result.put("p50", percentile(sorted, 50));
+            result.put("p90", percentile(sorted, 90));
+            result.put("p99", percentile(sorted, 99));
+            result.put("max", sorted.length > 0 ? sorted[sorted.length - 1] : 0);
+            return result;
+        }
+
+        private static long percentile(long[] sorted, int p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, index)];
+        }
+    }
+
+    /**
+     * 寄送統計：各狀態的佇列深度、本節點的累計寄送、重試、放棄次數與寄送延遲百分位數（毫秒）
+     */
+    public Map<String, Object> getStats() {
+        Map<EmailOutbox.Status, Long> depth = new EnumMap<>(EmailOutbox.Status.class);
+        for (EmailOutbox.Status status : EmailOutbox.Status.values()) {
+            depth.put(status, 0L);
+        }
+        for (EmailOutboxRepository.StatusCount count : emailOutboxRepository.countByStatus()) {
+            depth.put(count.getStatus(), count.getTotal());
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", threads.size());
+        stats.put("queueDepth", depth);
+        stats.put("sent", sent.sum());
+        stats.put("retried", retried.sum());
+        stats.put("dead", dead.sum());
+        stats.put("sentLastMinute", sentLastMinute());
+        long batchCount = batches.sum();
+        stats.put("batches", batchCount);
+        stats.put("averageBatchMillis", batchCount > 0 ? batchMillis.sum() / batchCount : 0);
+        stats.put("ratePerSecond", bucket != null ? ratePerSecond : 0);
+        stats.put("throttledMillis", throttledMillis.sum());
+        stats.put("sendLagMillis", sendLag.percentiles());
+        return stats;
+    }
+}
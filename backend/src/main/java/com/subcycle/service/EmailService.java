@@ -1,6 +1,11 @@
 package com.subcycle.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.subcycle.config.AppProperties;
+import com.subcycle.entity.EmailOutbox;
+import com.subcycle.repository.EmailOutboxRepository;
 import jakarta.annotation.PostConstruct;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
@@ -8,6 +13,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
@@ -16,6 +23,10 @@ import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -24,6 +35,9 @@ public class EmailService {
 
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
 
+    private static final TypeReference<Map<String, Object>> TEMPLATE_VARIABLES = new TypeReference<>() {
+    };
+
     @Autowired(required = false)
     private JavaMailSender mailSender;
 
@@ -33,6 +47,12 @@ public class EmailService {
     @Autowired
     private AppProperties appProperties;
 
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Value("${spring.mail.username:}")
     private String fromEmail;
 
@@ -104,57 +124,133 @@ public class EmailService {
 
     /**
      * 使用模板發送郵件
+     * 寫入 email_outbox 後即返回（在呼叫端的交易中寫入），由 EmailOutboxService 在背景套用模板並寄送
      */
-    public void sendTemplateEmail(String to, String subject, String templateName, Map<String, Object> variables) throws MessagingException {
-        Context context = new Context();
-        context.setVariables(variables);
-        context.setVariable("appName", appProperties.getName());
-        context.setVariable("logoUrl", appProperties.getLogoUrl());
+    public void sendTemplateEmail(String to, String subject, String templateName, Map<String, Object> variables) {
+        sendTemplateEmail(to, subject, templateName, variables, null);
+    }
 
-        String htmlContent = templateEngine.process(templateName, context);
-        sendHtmlEmail(to, subject, htmlContent);
+    /**
+     * 使用模板發送郵件，sendAt 之前不會寄出（null 表示立即寄送）
+     */
+    public void sendTemplateEmail(String to, String subject, String templateName, Map<String, Object> variables,
+                                  LocalDateTime sendAt) {
+        EmailOutbox email = new EmailOutbox();
+        email.setRecipient(to);
+        email.setSubject(subject);
+        email.setTemplate(templateName);
+        try {
+            email.setVariables(objectMapper.writeValueAsString(variables));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("郵件模板變數無法序列化: " + templateName, e);
+        }
+        email.setNextAttemptAt(sendAt);
+        emailOutboxRepository.save(email);
     }
 
     /**
-     * 發送訂閱續訂提醒
+     * 發送訂閱續訂提醒，於 sendAt 寄出
      */
-    public void sendSubscriptionRenewalReminder(String to, String userName, String subscriptionName, LocalDate renewalDate, Double amount) throws MessagingException {
-        Context context = new Context();
-        context.setVariable("userName", userName);
-        context.setVariable("subscriptionName", subscriptionName);
-        context.setVariable("renewalDate", renewalDate);
-        context.setVariable("amount", amount);
-        context.setVariable("appName", appProperties.getName());
-        context.setVariable("logoUrl", appProperties.getLogoUrl());
+    public void sendSubscriptionRenewalReminder(String to, String userName, String subscriptionName, LocalDate renewalDate, Double amount,
+                                                LocalDateTime sendAt) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", userName);
+        variables.put("subscriptionName", subscriptionName);
+        variables.put("renewalDate", renewalDate);
+        variables.put("amount", amount);
+        sendTemplateEmail(to, appProperties.getName() + " - 訂閱續訂提醒", "email/subscription-renewal", variables, sendAt);
+    }
 
-        String htmlContent = templateEngine.process("email/subscription-renewal", context);
-        sendHtmlEmail(to, appProperties.getName() + " - 訂閱續訂提醒", htmlContent);
+    /**
+     * 摘要郵件中的單筆訂閱
+     */
+    public record ReminderItem(String subscriptionName, LocalDate renewalDate, Double amount, String currency) {
     }
 
     /**
-     * 發送歡迎郵件
+     * 發送訂閱續訂提醒摘要（同一用戶多筆訂閱合併為一封，模板只套用一次），於 sendAt 寄出
      */
-    public void sendWelcomeEmail(String to, String userName) throws MessagingException {
-        Context context = new Context();
-        context.setVariable("userName", userName);
-        context.setVariable("appName", appProperties.getName());
-        context.setVariable("logoUrl", appProperties.getLogoUrl());
+    public void sendSubscriptionRenewalDigest(String to, String userName, List<ReminderItem> items, LocalDateTime sendAt) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", userName);
+        variables.put("items", items);
+        sendTemplateEmail(to, appProperties.getName() + " - " + items.size() + " 筆訂閱即將續訂", "email/subscription-renewal-digest", variables, sendAt);
+    }
 
-        String htmlContent = templateEngine.process("email/welcome", context);
-        sendHtmlEmail(to, "歡迎加入 " + appProperties.getName(), htmlContent);
+    /**
+     * 發送歡迎郵件
+     */
+    public void sendWelcomeEmail(String to, String userName) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", userName);
+        sendTemplateEmail(to, "歡迎加入 " + appProperties.getName(), "email/welcome", variables);
     }
 
     /**
      * 發送 Email 驗證郵件
      */
-    public void sendEmailVerification(String to, String userName, String verificationUrl) throws MessagingException {
+    public void sendEmailVerification(String to, String userName, String verificationUrl) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", userName);
+        variables.put("verificationUrl", verificationUrl);
+        sendTemplateEmail(to, "歡迎加入 " + appProperties.getName() + " - 請驗證您的電子郵件", "email/email-verification", variables);
+    }
+
+    /**
+     * 郵件服務是否已配置
+     */
+    public boolean isConfigured() {
+        return mailSender != null && fromEmail != null && !fromEmail.isEmpty();
+    }
+
+    /**
+     * 套用模板並建立待寄送郵件的 MimeMessage（由 EmailOutboxService 呼叫）
+     */
+    public MimeMessage prepare(EmailOutbox email) throws Exception {
         Context context = new Context();
-        context.setVariable("userName", userName);
-        context.setVariable("verificationUrl", verificationUrl);
+        if (email.getVariables() != null && !email.getVariables().isEmpty()) {
+            context.setVariables(objectMapper.readValue(email.getVariables(), TEMPLATE_VARIABLES));
+        }
         context.setVariable("appName", appProperties.getName());
         context.setVariable("logoUrl", appProperties.getLogoUrl());
+        String htmlContent = templateEngine.process(email.getTemplate(), context);
+
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setFrom(fromEmail);
+        helper.setTo(email.getRecipient());
+        helper.setSubject(email.getSubject());
+        helper.setText(htmlContent, true);
+        return message;
+    }
 
-        String htmlContent = templateEngine.process("email/email-verification", context);
-        sendHtmlEmail(to, "歡迎加入 " + appProperties.getName() + " - 請驗證您的電子郵件", htmlContent);
+    /**
+     * 以同一個 SMTP 連線寄出多封郵件
+     * @return 寄送失敗的郵件與原因，全部成功時為空
+     */
+    public Map<Object, Exception> sendBatch(List<MimeMessage> messages) {
+        if (messages.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            mailSender.send(messages.toArray(new MimeMessage[0]));
+            return Map.of();
+        } catch (MailSendException e) {
+            if (!e.getFailedMessages().isEmpty()) {
+                return e.getFailedMessages();
+            }
+            return failAll(messages, e);
+        } catch (MailException e) {
+            // 連線或認證失敗，整批都未寄出
+            return failAll(messages, e);
+        }
+    }
+
+    private static Map<Object, Exception> failAll(List<MimeMessage> messages, Exception e) {
+        Map<Object, Exception> failed = new IdentityHashMap<>();
+        for (MimeMessage message : messages) {
+            failed.put(message, e);
+        }
+        return failed;
     }
 }
@@ -0,0 +1,186 @@
+package com.subcycle.service;
+
+import com.subcycle.entity.ExchangeRate;
+import com.subcycle.entity.Money;
+import com.subcycle.repository.ExchangeRateRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 匯率服務
+ * 從 exchange_rates 表（以及可選的本地檔案）載入匯率，組成不可變的快照；
+ * 重新載入時建立新快照後整個替換，讀取端只做一次 volatile 讀取，不需加鎖。
+ */
+@Service
+@Slf4j
+public class ExchangeRateService {
+
+    private static final int RATE_SCALE = 8;
+
+    @Autowired
+    private ExchangeRateRepository exchangeRateRepository;
+
+    @Autowired
+    private DashboardStatisticsCache statisticsCache;
+
+    @Value("${fx.base-currency:TWD}")
+    private String baseCurrency;
+
+    /**
+     * 本地匯率檔（properties 格式，例如 USD=31.5），DB 中有同幣別時以 DB 為準
+     */
+    @Value("${fx.rates-file:}")
+    private String ratesFile;
+
+    private volatile Snapshot snapshot = new Snapshot(Money.DEFAULT_CURRENCY, Map.of(), null);
+
+    /**
+     * 匯率快照
+     * @param rates 1 單位該幣別可兌換的基準幣別金額（不含基準幣別本身）
+     */
+    public record Snapshot(String baseCurrency, Map<String, BigDecimal> rates, LocalDateTime loadedAt) {
+
+        /**
+         * 幣別對基準幣別的匯率，查無時返回 null
+         */
+        public BigDecimal rateOf(String currency) {
+            return baseCurrency.equals(currency) ? BigDecimal.ONE : rates.get(currency);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("載入匯率失敗，暫以 1:1 計算: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 定期重新載入匯率
+     */
+    @Scheduled(fixedDelayString = "${fx.refresh-interval-ms:3600000}", initialDelayString = "${fx.refresh-interval-ms:3600000}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("重新載入匯率失敗，沿用上一版快照: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 重新載入匯率並以新快照取代舊快照
+     * @return 新快照
+     */
+    public Snapshot refresh() {
+        String base = Money.currencyCode(baseCurrency);
+        Map<String, BigDecimal> rates = new HashMap<>();
+        loadFile(rates);
+        for (ExchangeRate row : exchangeRateRepository.findAll()) {
+            putRate(rates, row.getCurrency(), row.getRate());
+        }
+        rates.remove(base);
+
+        Snapshot previous = snapshot;
+        Snapshot next = new Snapshot(base, Map.copyOf(rates), LocalDateTime.now());
+        snapshot = next;
+
+        // 匯率變動後，已快取的儀表板金額即失效
+        if (!next.baseCurrency().equals(previous.baseCurrency()) || !next.rates().equals(previous.rates())) {
+            statisticsCache.invalidateAll();
+            log.info("匯率已更新：基準幣別 {}，共 {} 種幣別", base, rates.size());
+        }
+        return next;
+    }
+
+    private void loadFile(Map<String, BigDecimal> rates) {
+        if (ratesFile == null || ratesFile.isBlank()) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(Path.of(ratesFile))) {
+            properties.load(reader);
+        } catch (IOException e) {
+            log.warn("無法讀取匯率檔 {}: {}", ratesFile, e.getMessage());
+            return;
+        }
+        for (String currency : properties.stringPropertyNames()) {
+            try {
+                putRate(rates, currency, new BigDecimal(properties.getProperty(currency).trim()));
+            } catch (NumberFormatException e) {
+                log.warn("匯率檔中 {} 的匯率格式錯誤，已略過", currency);
+            }
+        }
+    }
+
+    private static void putRate(Map<String, BigDecimal> rates, String currency, BigDecimal rate) {
+        if (currency == null || currency.isBlank() || rate == null || rate.signum() <= 0) {
+            return;
+        }
+        rates.put(Money.currencyCode(currency), rate);
+    }
+
+    /**
+     * 目前的匯率快照
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 1 單位 from 可兌換多少 to，任一幣別查無匯率時返回 null
+     */
+    public BigDecimal getRate(String from, String to) {
+        String source = Money.currencyCode(from);
+        String target = Money.currencyCode(to);
+        if (source.equals(target)) {
+            return BigDecimal.ONE;
+        }
+        Snapshot current = snapshot;
+        BigDecimal sourceRate = current.rateOf(source);
+        BigDecimal targetRate = current.rateOf(target);
+        if (sourceRate == null || targetRate == null) {
+            return null;
+        }
+        return sourceRate.divide(targetRate, RATE_SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 換算為目標幣別，以 HALF_UP 捨入到目標幣別的小數位數
+     * 查無匯率時與既有邏輯相同以 1:1 計入
+     */
+    public Money convert(Money amount, String to) {
+        String target = Money.currencyCode(to);
+        if (amount.getCurrency().equals(target)) {
+            return amount;
+        }
+        if (amount.signum() == 0) {
+            return Money.zero(target);
+        }
+        Snapshot current = snapshot;
+        BigDecimal sourceRate = current.rateOf(amount.getCurrency());
+        BigDecimal targetRate = current.rateOf(target);
+        if (sourceRate == null || targetRate == null) {
+            return Money.of(amount.toBigDecimal(), target);
+        }
+        BigDecimal converted = amount.toBigDecimal().multiply(sourceRate)
+                .divide(targetRate, Money.scaleOf(target), RoundingMode.HALF_UP);
+        return Money.of(converted, target);
+    }
+}
@@ -1,6 +1,7 @@
 package com.subcycle.service;
 
 import com.subcycle.dto.SubscriptionResponse;
+import com.subcycle.entity.BillingCycle;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.FillPatternType;
 import org.apache.poi.ss.usermodel.Font;
@@ -112,14 +113,8 @@ public class ExportService {
         if (cycle == null) {
             return "";
         }
-        return switch (cycle.toLowerCase()) {
-            case "daily" -> "每日";
-            case "weekly" -> "每週";
-            case "monthly" -> "每月";
-            case "quarterly" -> "每季";
-            case "yearly" -> "每年";
-            default -> cycle;
-        };
+        BillingCycle billingCycle = BillingCycle.parse(cycle);
+        return billingCycle != null ? billingCycle.getLabel() : cycle;
     }
 
 }
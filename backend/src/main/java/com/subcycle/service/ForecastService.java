@@ -0,0 +1,131 @@
+package com.subcycle.service;
+
+import com.subcycle.dto.SpendingForecast;
+import com.subcycle.entity.Category;
+import com.subcycle.entity.Money;
+import com.subcycle.entity.Subscription;
+import com.subcycle.entity.User;
+import com.subcycle.repository.SubscriptionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 支出預測服務
+ * 以單次扣款事件串流計算未來多個月份的每月與各類別支出
+ */
+@Service
+public class ForecastService {
+
+    public static final int MAX_FORECAST_MONTHS = 60;
+
+    private static final String UNCATEGORIZED = "未分類";
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
+    @Autowired
+    private ExchangeRateService exchangeRateService;
+
+    /**
+     * 從本月起預測 months 個月的支出
+     */
+    public SpendingForecast getForecast(User user, int months) {
+        if (months < 1 || months > MAX_FORECAST_MONTHS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "預測月數必須在 1-" + MAX_FORECAST_MONTHS + " 之間");
+        }
+
+        LocalDate today = LocalDate.now();
+        YearMonth startMonth = YearMonth.from(today);
+        LocalDate from = startMonth.atDay(1);
+        LocalDate to = startMonth.plusMonths(months - 1L).atEndOfMonth();
+
+        List<Subscription> subscriptions = subscriptionRepository.findActiveInRangeWithCategory(user, from, to);
+
+        // 每個訂閱的金額（換算為用戶幣別的最小單位）與類別欄位只計算一次
+        String currency = Money.currencyCode(user.getCurrency());
+        int size = subscriptions.size();
+        long[] priceMinor = new long[size];
+        int[] categoryColumn = new int[size];
+        Map<Long, Integer> columnByCategoryId = new HashMap<>();
+        List<Category> columns = new ArrayList<>();
+        columns.add(null); // 第 0 欄為未分類
+        for (int i = 0; i < size; i++) {
+            Subscription sub = subscriptions.get(i);
+            priceMinor[i] = exchangeRateService.convert(Money.of(sub.getPrice(), sub.getCurrency()), currency).getMinorUnits();
+            Category category = sub.getCategory();
+            if (category == null) {
+                categoryColumn[i] = 0;
+            } else {
+                categoryColumn[i] = columnByCategoryId.computeIfAbsent(category.getId(), id -> {
+                    columns.add(category);
+                    return columns.size() - 1;
+                });
+            }
+        }
+
+        long[] monthTotals = new long[months];
+        int[] monthCounts = new int[months];
+        long[][] monthCategoryTotals = new long[months][columns.size()];
+
+        Iterator<PaymentOccurrences.Occurrence> occurrences = PaymentOccurrences.merge(subscriptions, from, to, today);
+        while (occurrences.hasNext()) {
+            PaymentOccurrences.Occurrence occurrence = occurrences.next();
+            LocalDate date = occurrence.date();
+            int monthIndex = (date.getYear() - startMonth.getYear()) * 12 + date.getMonthValue() - startMonth.getMonthValue();
+            long amount = priceMinor[occurrence.index()];
+            monthTotals[monthIndex] += amount;
+            monthCounts[monthIndex]++;
+            monthCategoryTotals[monthIndex][categoryColumn[occurrence.index()]] += amount;
+        }
+
+        long grandTotal = 0;
+        long[] categoryTotals = new long[columns.size()];
+        List<SpendingForecast.MonthForecast> monthly = new ArrayList<>(months);
+        for (int m = 0; m < months; m++) {
+            grandTotal += monthTotals[m];
+            for (int c = 0; c < columns.size(); c++) {
+                categoryTotals[c] += monthCategoryTotals[m][c];
+            }
+            monthly.add(new SpendingForecast.MonthForecast(
+                    startMonth.plusMonths(m).toString(),
+                    Money.ofMinor(monthTotals[m], currency).toBigDecimal(),
+                    monthCounts[m],
+                    toCategoryAmounts(columns, monthCategoryTotals[m], currency)
+            ));
+        }
+
+        return new SpendingForecast(
+                startMonth.toString(),
+                months,
+                Money.ofMinor(grandTotal, currency).toBigDecimal(),
+                monthly,
+                toCategoryAmounts(columns, categoryTotals, currency)
+        );
+    }
+
+    private List<SpendingForecast.CategoryAmount> toCategoryAmounts(List<Category> columns, long[] totals, String currency) {
+        List<SpendingForecast.CategoryAmount> amounts = new ArrayList<>();
+        for (int c = 0; c < columns.size(); c++) {
+            if (totals[c] == 0) {
+                continue;
+            }
+            Category category = columns.get(c);
+            amounts.add(new SpendingForecast.CategoryAmount(
+                    category != null ? category.getId() : null,
+                    category != null ? category.getName() : UNCATEGORIZED,
+                    Money.ofMinor(totals[c], currency).toBigDecimal()
+            ));
+        }
+        return amounts;
+    }
+}
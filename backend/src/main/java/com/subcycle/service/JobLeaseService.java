@@ -0,0 +1,205 @@
+package com.subcycle.service;
+
+import com.subcycle.repository.JobLockRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 排程工作租約服務
+ * 多個節點在同一時間觸發同一排程時，只有取得 job_lock 租約的節點執行，同一批次（runKey）完成後不再重複執行；
+ * 執行期間以心跳延長租約，節點中斷後租約到期，未取得租約的節點會在下次檢查時接手執行。
+ * 只有執行成功才記錄批次已完成；執行失敗只釋放租約，稍後重試。
+ * 心跳發現租約已被接手時中斷執行中的工作，工作在批次之間以 {@link #checkLease} 確認後停止。
+ */
+@Service
+@Slf4j
+public class JobLeaseService {
+
+    @Autowired
+    private JobLockRepository jobLockRepository;
+
+    @Value("${jobs.lease.duration-ms:300000}")
+    private long leaseMillis;
+
+    @Value("${jobs.lease.heartbeat-interval-ms:60000}")
+    private long heartbeatMillis;
+
+    /**
+     * 本節點的識別（主機名稱加隨機碼，同一主機上的多個程序也能區分）
+     */
+    private final String owner = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    private final ScheduledExecutorService heartbeats =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("job-lease-heartbeat").factory());
+
+    /**
+     * 未取得租約的批次，租約到期且尚未完成時由本節點接手
+     */
+    private final Map<String, PendingRun> pending = new ConcurrentHashMap<>();
+
+    private record PendingRun(String runKey, Runnable job) {
+    }
+
+    /**
+     * 本節點持有中的租約
+     */
+    private final Map<String, HeldLease> held = new ConcurrentHashMap<>();
+
+    private static final class HeldLease {
+        private final String runKey;
+        private final Thread thread;
+        private boolean finished;
+        private volatile boolean lost;
+
+        HeldLease(String runKey, Thread thread) {
+            this.runKey = runKey;
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * 租約已被其他節點接手，本節點的執行需停止
+     */
+    public static class LeaseLostException extends RuntimeException {
+        public LeaseLostException(String jobName, String runKey) {
+            super("Job " + jobName + " (" + runKey + ") lease lost to another node");
+        }
+    }
+
+    /**
+     * 取得租約後執行工作
+     * 工作拋出例外時不記錄完成，只釋放租約並保留為待重試，例外照常拋出
+     * @param runKey 排程批次，同一批次只會完成一次（例如每日工作使用當天日期）
+     * @return 是否由本節點執行
+     * @throws LeaseLostException 執行期間租約被其他節點接手
+     */
+    public boolean runExclusive(String jobName, String runKey, Runnable job) {
+        jobLockRepository.ensureExists(jobName);
+        if (jobLockRepository.tryAcquire(jobName, owner, runKey, leaseMillis) == 0) {
+            pending.put(jobName, new PendingRun(runKey, job));
+            log.info("Job {} ({}) is held or completed by another node, skipped", jobName, runKey);
+            return false;
+        }
+        pending.remove(jobName);
+
+        HeldLease lease = new HeldLease(runKey, Thread.currentThread());
+        held.put(jobName, lease);
+        ScheduledFuture<?> heartbeat = heartbeats.scheduleAtFixedRate(
+                () -> renew(jobName, lease), heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        boolean succeeded = false;
+        try {
+            job.run();
+            succeeded = true;
+        } finally {
+            heartbeat.cancel(false);
+            synchronized (lease) {
+                lease.finished = true;
+            }
+            held.remove(jobName, lease);
+            if (lease.lost) {
+                // 清除心跳設定的中斷狀態，避免影響排程執行緒的下一個工作
+                Thread.interrupted();
+            } else {
+                finish(jobName, runKey, job, succeeded);
+            }
+        }
+        if (lease.lost) {
+            throw new LeaseLostException(jobName, runKey);
+        }
+        return true;
+    }
+
+    /**
+     * 工作在批次之間呼叫：本節點持有的租約已被接手時拋出 LeaseLostException（未持有租約時不檢查）
+     * 可在工作的任何執行緒（例如分區的虛擬執行緒）呼叫
+     */
+    public void checkLease(String jobName) {
+        HeldLease lease = held.get(jobName);
+        if (lease != null && lease.lost) {
+            throw new LeaseLostException(jobName, lease.runKey);
+        }
+    }
+
+    private void finish(String jobName, String runKey, Runnable job, boolean succeeded) {
+        try {
+            if (succeeded) {
+                jobLockRepository.complete(jobName, owner, runKey);
+            } else {
+                jobLockRepository.release(jobName, owner, runKey);
+                pending.putIfAbsent(jobName, new PendingRun(runKey, job));
+                log.warn("Job {} ({}) failed, lease released for retry", jobName, runKey);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Job {} ({}) lease release failed, it will expire: {}", jobName, runKey, e.getMessage());
+        }
+    }
+
+    /**
+     * 定期檢查本節點略過或執行失敗的批次：已完成則移除，租約到期（持有節點中斷）或已釋放則接手執行
+     */
+    @Scheduled(fixedDelayString = "${jobs.lease.recovery-interval-ms:60000}",
+               initialDelayString = "${jobs.lease.recovery-interval-ms:60000}")
+    public void recoverExpiredLeases() {
+        for (Map.Entry<String, PendingRun> entry : pending.entrySet()) {
+            String jobName = entry.getKey();
+            PendingRun run = entry.getValue();
+            boolean completed = jobLockRepository.findById(jobName)
+                    .map(lock -> run.runKey().equals(lock.getCompletedKey()))
+                    .orElse(false);
+            if (completed) {
+                pending.remove(jobName, run);
+                continue;
+            }
+            try {
+                if (runExclusive(jobName, run.runKey(), run.job())) {
+                    log.info("Job {} ({}) taken over after lease expiry", jobName, run.runKey());
+                }
+            } catch (RuntimeException e) {
+                log.error("Job {} ({}) takeover failed: {}", jobName, run.runKey(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private void renew(String jobName, HeldLease lease) {
+        try {
+            if (jobLockRepository.renew(jobName, owner, lease.runKey, leaseMillis) == 0) {
+                synchronized (lease) {
+                    if (!lease.finished && !lease.lost) {
+                        lease.lost = true;
+                        lease.thread.interrupt();
+                        log.warn("Job {} ({}) lease lost to another node, stopping", jobName, lease.runKey);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Job {} ({}) lease renewal failed: {}", jobName, lease.runKey, e.getMessage());
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+    }
+}
@@ -0,0 +1,143 @@
+package com.subcycle.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+/**
+ * 分區工作執行器
+ * 依 user_id 取餘數將排程工作切成多個分區，以虛擬執行緒同時執行；
+ * 同時執行的分區數不超過連線池大小（保留部分連線給 API 請求），
+ * 單一分區失敗不影響其他分區，並回報每個分區的耗時以觀察負載是否偏斜。
+ */
+@Component
+@Slf4j
+public class PartitionedJobRunner {
+
+    @Value("${jobs.partitions:8}")
+    private int partitions;
+
+    @Value("${jobs.parallelism:4}")
+    private int parallelism;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int poolSize;
+
+    /**
+     * 保留給 API 請求的連線數
+     */
+    @Value("${jobs.reserved-connections:2}")
+    private int reservedConnections;
+
+    /**
+     * 分區：負責 MOD(user_id, count) = index 的用戶
+     */
+    public record Partition(int index, int count) {
+    }
+
+    /**
+     * 單一分區的工作內容，由實作自行決定交易範圍
+     * @return 處理筆數
+     */
+    @FunctionalInterface
+    public interface PartitionTask {
+        int run(Partition partition) throws Exception;
+    }
+
+    /**
+     * 單一分區的執行結果，失敗時 error 為錯誤訊息
+     */
+    public record PartitionResult(int index, int processed, long millis, String error) {
+    }
+
+    /**
+     * 整體執行摘要
+     */
+    public record RunSummary(String job, int parallelism, long millis, List<PartitionResult> partitions) {
+
+        public int processed() {
+            return partitions.stream().mapToInt(PartitionResult::processed).sum();
+        }
+
+        public long failed() {
+            return partitions.stream().filter(p -> p.error() != null).count();
+        }
+    }
+
+    /**
+     * 實際使用的並行數：不超過分區數與可用連線數
+     */
+    public int effectiveParallelism() {
+        int connections = Math.max(1, poolSize - reservedConnections);
+        return Math.max(1, Math.min(Math.min(parallelism, connections), partitions));
+    }
+
+    /**
+     * 執行所有分區並等待完成
+     */
+    public RunSummary run(String job, PartitionTask task) {
+        int count = Math.max(1, partitions);
+        int permits = effectiveParallelism();
+        Semaphore semaphore = new Semaphore(permits);
+        long start = System.nanoTime();
+
+        List<Future<PartitionResult>> futures = new ArrayList<>(count);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < count; i++) {
+                Partition partition = new Partition(i, count);
+                futures.add(executor.submit(() -> runPartition(job, partition, task, semaphore)));
+            }
+        }
+
+        List<PartitionResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(new PartitionResult(i, 0, 0, "interrupted"));
+            } catch (ExecutionException e) {
+                results.add(new PartitionResult(i, 0, 0, String.valueOf(e.getCause())));
+            }
+        }
+
+        RunSummary summary = new RunSummary(job, permits, (System.nanoTime() - start) / 1_000_000, results);
+        log(summary);
+        return summary;
+    }
+
+    private PartitionResult runPartition(String job, Partition partition, PartitionTask task, Semaphore semaphore)
+            throws InterruptedException {
+        semaphore.acquire();
+        long start = System.nanoTime();
+        try {
+            int processed = task.run(partition);
+            return new PartitionResult(partition.index(), processed, (System.nanoTime() - start) / 1_000_000, null);
+        } catch (Exception e) {
+            log.error("Job {} partition {}/{} failed: {}", job, partition.index(), partition.count(), e.getMessage(), e);
+            return new PartitionResult(partition.index(), 0, (System.nanoTime() - start) / 1_000_000, e.getMessage());
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    private void log(RunSummary summary) {
+        long slowest = summary.partitions().stream().mapToLong(PartitionResult::millis).max().orElse(0);
+        long fastest = summary.partitions().stream().mapToLong(PartitionResult::millis).min().orElse(0);
+        String detail = summary.partitions().stream()
+                .map(p -> "p" + p.index() + "=" + p.processed() + "/" + p.millis() + "ms" + (p.error() != null ? "(failed)" : ""))
+                .collect(Collectors.joining(", "));
+        log.info("Job {} finished in {} ms (parallelism {}): processed {}, failed partitions {}, slowest {} ms, fastest {} ms [{}]",
+                summary.job(), summary.millis(), summary.parallelism(), summary.processed(), summary.failed(),
+                slowest, fastest, detail);
+    }
+}
@@ -0,0 +1,256 @@
+package com.subcycle.service;
+
+import com.subcycle.entity.BillingCycle;
+import com.subcycle.entity.Money;
+import com.subcycle.entity.Subscription;
+import com.subcycle.entity.User;
+import com.subcycle.repository.PaymentLedgerRepository;
+import com.subcycle.repository.SubscriptionRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 扣款紀錄服務
+ * 已發生的扣款寫入 payment_ledger，過去月份的支出直接加總紀錄，
+ * 不再以目前的價格與週期從 nextPaymentDate 往回推算。
+ * 寫入的扣款與儀表板計入規則相同（起始日、到期日、歷史支出設定）。
+ */
+@Service
+@Slf4j
+public class PaymentLedgerService {
+
+    private static final String BACKFILL_JOB = "ledger-backfill";
+
+    /**
+     * 回填時每個訂閱最多展開的步數（需小於 cte_max_recursion_depth，每日週期約可回溯 33 個月）
+     */
+    private static final int BACKFILL_MAX_STEPS = 999;
+
+    /**
+     * 多列 INSERT 每句最多寫入的筆數（每筆 5 個參數）
+     */
+    private static final int INSERT_ROWS_PER_STATEMENT = 1000;
+
+    private static final List<String> KNOWN_CYCLE_CODES = Arrays.stream(BillingCycle.values())
+            .flatMap(cycle -> Stream.of(cycle.getDbCode(), cycle.getCode()))
+            .toList();
+
+    @Autowired
+    private PaymentLedgerRepository paymentLedgerRepository;
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
+    @Autowired
+    private DashboardStatisticsCache statisticsCache;
+
+    @Autowired
+    private JobLeaseService jobLeaseService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * 回填時往前涵蓋的月數
+     */
+    @Value("${ledger.backfill-months:24}")
+    private int backfillMonths;
+
+    @Value("${ledger.backfill-on-startup:false}")
+    private boolean backfillOnStartup;
+
+    /**
+     * 回填每批處理的訂閱數
+     */
+    @Value("${ledger.backfill-chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * 一筆待寫入的扣款
+     */
+    public record Charge(Long subscriptionId, Long userId, LocalDate paidOn, BigDecimal amount, String currency) {
+    }
+
+    /**
+     * 訂閱在 [from, to] 區間內的扣款（只計算，不寫入；需在推進扣款日之前呼叫）
+     */
+    public List<Charge> charges(Subscription sub, LocalDate from, LocalDate to, LocalDate today) {
+        if (sub.getId() == null || sub.getNextPaymentDate() == null || to.isBefore(from)) {
+            return List.of();
+        }
+        List<Charge> charges = new ArrayList<>();
+        Iterator<PaymentOccurrences.Occurrence> occurrences = PaymentOccurrences.merge(List.of(sub), from, to, today);
+        while (occurrences.hasNext()) {
+            charges.add(new Charge(sub.getId(), sub.getUser().getId(), occurrences.next().date(),
+                    sub.getPrice(), Money.currencyCode(sub.getCurrency())));
+        }
+        return charges;
+    }
+
+    /**
+     * 以多列 INSERT IGNORE 寫入扣款，已存在的紀錄略過（依 uk_payment_ledger_subscription_paid_on）
+     * 每句最多 INSERT_ROWS_PER_STATEMENT 筆，一批訂閱的扣款只需一到數次往返；需在交易中執行
+     * @return 新增筆數
+     */
+    public int recordCharges(List<Charge> charges) {
+        int inserted = 0;
+        for (int start = 0; start < charges.size(); start += INSERT_ROWS_PER_STATEMENT) {
+            List<Charge> rows = charges.subList(start, Math.min(start + INSERT_ROWS_PER_STATEMENT, charges.size()));
+            StringBuilder sql = new StringBuilder(PaymentLedgerRepository.BULK_LEDGER_INSERT).append("VALUES ");
+            for (int i = 0; i < rows.size(); i++) {
+                sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, CURRENT_TIMESTAMP)");
+            }
+            Query query = entityManager.createNativeQuery(sql.toString());
+            int position = 1;
+            for (Charge charge : rows) {
+                query.setParameter(position++, charge.subscriptionId());
+                query.setParameter(position++, charge.userId());
+                query.setParameter(position++, charge.paidOn());
+                query.setParameter(position++, charge.amount());
+                query.setParameter(position++, charge.currency());
+            }
+            inserted += query.executeUpdate();
+        }
+        return inserted;
+    }
+
+    /**
+     * 整批推進前，以 SQL 寫入該週期可整批處理的訂閱被跳過的扣款
+     * 條件與 SubscriptionRepository 的整批推進查詢相同，需在同一交易中先於推進執行
+     * @return 新增筆數
+     */
+    public int recordSkippedCharges(BillingCycle cycle, LocalDate today, int maxLagDays) {
+        if (cycle.getStepDays() > 0) {
+            return paymentLedgerRepository.insertSkippedDayCycle(
+                    cycle.getDbCode(), cycle.getStepDays(), today, maxLagDays, maxLagDays);
+        }
+        return paymentLedgerRepository.insertSkippedMonthCycle(
+                cycle.getDbCode(), cycle.getStepMonths(), today, maxLagDays, maxLagDays);
+    }
+
+    /**
+     * 以既有訂閱資料回填 nextPaymentDate 之前的扣款紀錄（可重複執行）
+     * 依訂閱 ID 以 keyset 分批，每批每個週期一句 INSERT ... SELECT 寫入並各自提交，中斷後重跑即可補齊
+     * @return 新增筆數
+     */
+    public int backfill() {
+        LocalDate today = LocalDate.now();
+        LocalDate from = YearMonth.from(today).minusMonths(backfillMonths).atDay(1);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int inserted = 0;
+        long afterId = 0;
+        while (true) {
+            jobLeaseService.checkLease(BACKFILL_JOB);
+            List<Long> ids = subscriptionRepository.findIdsAfter(afterId, PageRequest.of(0, chunkSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            long chunkAfter = afterId;
+            long lastId = ids.get(ids.size() - 1);
+            Integer count = transaction.execute(status -> backfillChunk(chunkAfter, lastId, from, today));
+            inserted += count != null ? count : 0;
+            afterId = lastId;
+            if (ids.size() < chunkSize) {
+                break;
+            }
+        }
+        log.info("Payment ledger backfill: inserted {} entries since {}", inserted, from);
+        if (inserted > 0) {
+            statisticsCache.invalidateAll();
+        }
+        return inserted;
+    }
+
+    /**
+     * 回填 ID 在 (afterId, lastId] 的訂閱，每個週期一句
+     */
+    private int backfillChunk(long afterId, long lastId, LocalDate from, LocalDate today) {
+        int inserted = 0;
+        for (BillingCycle cycle : BillingCycle.values()) {
+            // 相容尚未遷移的舊代碼（daily、weekly ...）；空白或無法辨識的代碼與讀取時相同視為每月
+            inserted += paymentLedgerRepository.insertBackfill(afterId, lastId,
+                    List.of(cycle.getDbCode(), cycle.getCode()), cycle == BillingCycle.MONTHLY, KNOWN_CYCLE_CODES,
+                    cycle.getStepDays(), cycle.getStepMonths(), from, today, BACKFILL_MAX_STEPS);
+        }
+        return inserted;
+    }
+
+    /**
+     * 啟動時回填（預設關閉），多節點同時啟動時只由取得租約的節點執行
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (!backfillOnStartup) {
+            return;
+        }
+        try {
+            jobLeaseService.runExclusive(BACKFILL_JOB, LocalDate.now().toString(), this::backfill);
+        } catch (RuntimeException e) {
+            log.warn("Payment ledger backfill failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 過去月份各幣別的支出
+     * 已寫入的紀錄以 SUM ... GROUP BY 查詢；排程尚未推進（nextPaymentDate 早於今天）的扣款另外補上
+     * @param subscriptions 用戶的訂閱
+     */
+    public Map<String, Money> getPastMonthTotals(User user, List<Subscription> subscriptions, YearMonth month, LocalDate today) {
+        LocalDate monthStart = month.atDay(1);
+        LocalDate monthEnd = month.atEndOfMonth();
+        if (!monthEnd.isBefore(today)) {
+            monthEnd = today.minusDays(1);
+        }
+
+        Map<String, Money> totals = new LinkedHashMap<>();
+        for (PaymentLedgerRepository.CurrencyTotal row : paymentLedgerRepository.sumByCurrency(user.getId(), monthStart, monthEnd)) {
+            String currency = Money.currencyCode(row.getCurrency());
+            totals.merge(currency, Money.of(row.getTotal(), currency), Money::plus);
+        }
+
+        List<Subscription> pending = new ArrayList<>();
+        for (Subscription sub : subscriptions) {
+            LocalDate nextPayment = sub.getNextPaymentDate();
+            if (nextPayment != null && nextPayment.isBefore(today) && !nextPayment.isAfter(monthEnd)) {
+                pending.add(sub);
+            }
+        }
+        if (!pending.isEmpty()) {
+            Iterator<PaymentOccurrences.Occurrence> occurrences = PaymentOccurrences.merge(pending, monthStart, monthEnd, today);
+            while (occurrences.hasNext()) {
+                PaymentOccurrences.Occurrence occurrence = occurrences.next();
+                Subscription sub = occurrence.subscription();
+                if (occurrence.date().isBefore(sub.getNextPaymentDate())) {
+                    continue; // 已在紀錄中
+                }
+                String currency = Money.currencyCode(sub.getCurrency());
+                totals.merge(currency, Money.of(sub.getPrice(), currency), Money::plus);
+            }
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,218 @@
+package com.subcycle.service;
+
+import com.subcycle.entity.BillingCycle;
+import com.subcycle.entity.Subscription;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 扣款事件串流
+ * 每個訂閱各自以遞推引擎產生扣款日，再以 k 路合併依日期順序惰性輸出，
+ * 不需要為每個月份重新計算一次。
+ */
+public final class PaymentOccurrences {
+
+    private static final int INDEX_BITS = 24;
+    private static final long MAX_INDEX = (1L << INDEX_BITS) - 1;
+
+    private PaymentOccurrences() {
+    }
+
+    /**
+     * 一筆扣款事件
+     * @param index 訂閱在輸入列表中的位置
+     */
+    public record Occurrence(LocalDate date, int index, Subscription subscription) {
+    }
+
+    /**
+     * 依日期順序產生 [from, to] 區間內所有訂閱的扣款事件（同日依輸入順序）
+     * 起始日、到期日與歷史支出設定的計入規則與儀表板月統計相同。
+     */
+    public static Iterator<Occurrence> merge(List<Subscription> subscriptions, LocalDate from, LocalDate to, LocalDate today) {
+        if (subscriptions.size() > MAX_INDEX) {
+            throw new IllegalArgumentException("訂閱數量超過上限: " + subscriptions.size());
+        }
+
+        // 堆中只存放 (扣款日, 索引) 組成的 long，避免比較時逐一存取游標物件
+        Cursor[] cursors = new Cursor[subscriptions.size()];
+        long[] heap = new long[subscriptions.size()];
+        int size = 0;
+        for (int i = 0; i < subscriptions.size(); i++) {
+            Subscription sub = subscriptions.get(i);
+            if (sub.getNextPaymentDate() == null) {
+                continue;
+            }
+            Cursor cursor = new Cursor(sub, i, from, to, today);
+            if (cursor.current != null) {
+                cursors[i] = cursor;
+                heap[size++] = key(cursor);
+            }
+        }
+        for (int i = (size >>> 1) - 1; i >= 0; i--) {
+            siftDown(heap, i, size);
+        }
+
+        int initialSize = size;
+        return new Iterator<>() {
+            private int remaining = initialSize;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public Occurrence next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                // 取出堆頂後原地推進，只需一次下沉
+                Cursor cursor = cursors[(int) (heap[0] & MAX_INDEX)];
+                Occurrence occurrence = new Occurrence(cursor.current, cursor.index, cursor.subscription);
+                cursor.advance();
+                if (cursor.current != null) {
+                    heap[0] = key(cursor);
+                } else {
+                    heap[0] = heap[--remaining];
+                }
+                siftDown(heap, 0, remaining);
+                return occurrence;
+            }
+        };
+    }
+
+    private static long key(Cursor cursor) {
+        return (cursor.current.toEpochDay() << INDEX_BITS) | cursor.index;
+    }
+
+    private static void siftDown(long[] heap, int pos, int size) {
+        if (size == 0) {
+            return;
+        }
+        long item = heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (item <= heap[child]) {
+                break;
+            }
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = item;
+    }
+
+    /**
+     * 以 Stream 形式提供 {@link #merge}
+     */
+    public static Stream<Occurrence> stream(List<Subscription> subscriptions, LocalDate from, LocalDate to, LocalDate today) {
+        Iterator<Occurrence> iterator = merge(subscriptions, from, to, today);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL),
+                false);
+    }
+
+    /**
+     * 單一訂閱的扣款日游標，以相對於 nextPaymentDate 的步數定位
+     */
+    private static final class Cursor {
+
+        private final Subscription subscription;
+        private final int index;
+        private final BillingCycle cycle;
+        private final LocalDate anchor;
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+        private final LocalDate to;
+        private final LocalDate today;
+        private final boolean excludeHistorical;
+
+        private long step;
+        private LocalDate raw;
+        private LocalDate current;
+
+        Cursor(Subscription subscription, int index, LocalDate from, LocalDate to, LocalDate today) {
+            this.subscription = subscription;
+            this.index = index;
+            this.cycle = BillingCycle.orMonthly(subscription.getBillingCycle());
+            this.anchor = subscription.getNextPaymentDate();
+            this.startDate = subscription.getStartDate();
+            this.endDate = subscription.getEndDate();
+            this.to = to;
+            this.today = today;
+            this.excludeHistorical = Boolean.FALSE.equals(subscription.getIncludeHistoricalPayments());
+
+            // 直接定位到第一筆可能輸出的扣款前，跨越起始日或今天的前一筆仍需檢查
+            long first = firstIndexOnOrAfter(from);
+            if (startDate != null) {
+                first = Math.max(first, firstIndexOnOrAfter(startDate) - 1);
+            }
+            if (excludeHistorical) {
+                first = Math.max(first, firstIndexOnOrAfter(today) - 1);
+            }
+            step = first - 1;
+            advance();
+        }
+
+        private long firstIndexOnOrAfter(LocalDate date) {
+            if (anchor.isBefore(date)) {
+                return cycle.stepsOnOrAfter(anchor, date);
+            }
+            long back = -cycle.stepsBackOnOrBefore(anchor, date);
+            return cycle.advance(anchor, back).isBefore(date) ? back + 1 : back;
+        }
+
+        /**
+         * 前進到下一筆符合條件的扣款，沒有則 current 設為 null
+         */
+        void advance() {
+            while (true) {
+                raw = nextRaw();
+                step++;
+                LocalDate payment = raw;
+
+                // 早於起始日的扣款：跨越起始日者調整到起始日，否則跳過
+                if (startDate != null && payment.isBefore(startDate)) {
+                    if (!following(raw).isAfter(startDate)) {
+                        continue;
+                    }
+                    payment = startDate;
+                }
+
+                if (payment.isAfter(to) || (endDate != null && payment.isAfter(endDate))) {
+                    current = null;
+                    return;
+                }
+                if (excludeHistorical && payment.isBefore(today)) {
+                    continue;
+                }
+                current = payment;
+                return;
+            }
+        }
+
+        /**
+         * 下一步的原始扣款日；nextPaymentDate 之後逐次前進與閉式結果相同，直接從上一筆推進
+         */
+        private LocalDate nextRaw() {
+            return raw != null && step >= 0 ? cycle.next(raw) : cycle.advance(anchor, step + 1);
+        }
+
+        private LocalDate following(LocalDate occurrence) {
+            return step >= 0 ? cycle.next(occurrence) : cycle.advance(anchor, step + 1);
+        }
+    }
+}
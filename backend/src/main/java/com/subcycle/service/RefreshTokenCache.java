@@ -0,0 +1,62 @@
+package com.subcycle.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 最近簽發的 refresh token 快取
+ * 以 token 的 SHA-256 摘要為鍵，保存 token 與所屬用戶的資料，刷新時命中即不需查詢 refresh_tokens 與 users；
+ * 依最近使用順序淘汰（LRU），只保存尚未輪換的 token。
+ * 快取只省去讀取：輪換時仍以條件更新確認 token 在資料庫中尚未被撤銷或刪除，其他節點的變更不會因快取而被忽略。
+ */
+@Component
+public class RefreshTokenCache {
+
+    @Value("${auth.refresh-token.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${auth.refresh-token.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final Map<ByteBuffer, Entry> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * token 與用戶資料；loadedAt 為用戶資料從資料庫讀取的時間，輪換時沿用，超過 ttl 即重新讀取
+     */
+    public record Entry(Long tokenId, String sessionId, LocalDateTime expiresAt,
+                        Long userId, String email, String name, String role, int tokenVersion, long loadedAt) {
+    }
+
+    /**
+     * 取得快取的 token，未命中或用戶資料已超過 ttl 時返回 null
+     */
+    public synchronized Entry get(byte[] tokenHash) {
+        Entry entry = cache.get(ByteBuffer.wrap(tokenHash));
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.loadedAt() > ttlSeconds * 1_000_000_000L) {
+            cache.remove(ByteBuffer.wrap(tokenHash));
+            return null;
+        }
+        return entry;
+    }
+
+    public synchronized void put(byte[] tokenHash, Entry entry) {
+        cache.put(ByteBuffer.wrap(tokenHash), entry);
+    }
+
+    public synchronized void invalidate(byte[] tokenHash) {
+        cache.remove(ByteBuffer.wrap(tokenHash));
+    }
+}
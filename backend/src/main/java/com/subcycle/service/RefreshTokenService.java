@@ -3,74 +3,201 @@ package com.subcycle.service;
 import com.subcycle.entity.RefreshToken;
 import com.subcycle.entity.User;
 import com.subcycle.repository.RefreshTokenRepository;
+import com.subcycle.repository.UserRepository;
+import com.subcycle.security.AccessTokenRevocationService;
+import com.subcycle.security.TokenVersionRegistry;
 import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
 import java.util.UUID;
 
+/**
+ * Refresh token 服務
+ * 每次登入建立一個 session（裝置），每位用戶最多保留 auth.refresh-token.max-sessions 個，超過時移除最舊的；
+ * 資料庫只保存 token 的 SHA-256 摘要。每次刷新都會輪換：舊 token 標記為已撤銷，簽發同一 session 的新 token，
+ * 過期時間沿用 session 登入時決定的時間，輪換不會延長 session。
+ * 已輪換的 token 再次被使用表示 token 可能外洩，整個 session 隨即撤銷，該 session 已簽發的 access token 一併撤銷
+ * （並行刷新在寬限時間內只拒絕，不撤銷）。
+ * 已輪換的 token 保留到過期，由 TokenPurgeService 分批刪除。
+ */
 @Service
+@Slf4j
 public class RefreshTokenService {
 
     // Refresh token 有效期：7 天
     private static final int REFRESH_TOKEN_VALIDITY_DAYS = 7;
 
+    private static final int TOKEN_BYTES = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     @Autowired
     private RefreshTokenRepository refreshTokenRepository;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RefreshTokenCache refreshTokenCache;
+
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Autowired
+    private AccessTokenRevocationService accessTokenRevocationService;
+
+    @Value("${auth.refresh-token.max-sessions:10}")
+    private int maxSessions;
+
+    @Value("${auth.refresh-token.reuse-grace-seconds:10}")
+    private long reuseGraceSeconds;
+
     /**
-     * 為用戶創建新的 refresh token
+     * 簽發的 refresh token 與其 session、用戶資料
      */
-    @Transactional
-    public String createRefreshToken(User user) {
-        // 刪除該用戶舊的 refresh token
-        refreshTokenRepository.deleteByUser(user);
-
-        RefreshToken refreshToken = new RefreshToken();
-        refreshToken.setUser(user);
-        refreshToken.setToken(UUID.randomUUID().toString());
-        refreshToken.setExpiresAt(LocalDateTime.now().plusDays(REFRESH_TOKEN_VALIDITY_DAYS));
-        refreshToken.setRevoked(false);
+    public record IssuedToken(String refreshToken, RefreshTokenCache.Entry session) {
+    }
 
-        refreshTokenRepository.save(refreshToken);
+    /**
+     * 為用戶建立新的 session 與 refresh token，不影響其他裝置的 session
+     */
+    @Transactional
+    public IssuedToken createRefreshToken(User user) {
+        List<String> sessionIds = refreshTokenRepository.findActiveSessionIds(user, LocalDateTime.now());
+        if (sessionIds.size() >= maxSessions) {
+            refreshTokenRepository.deleteBySessionIds(sessionIds.subList(Math.max(maxSessions - 1, 0), sessionIds.size()));
+        }
 
-        return refreshToken.getToken();
+        RefreshTokenCache.Entry session = new RefreshTokenCache.Entry(null, UUID.randomUUID().toString(),
+                LocalDateTime.now().plusDays(REFRESH_TOKEN_VALIDITY_DAYS),
+                user.getId(), user.getEmail(), user.getName(), user.getRole(),
+                user.getTokenVersion() != null ? user.getTokenVersion() : 0, System.nanoTime());
+        return issue(user, session);
     }
 
     /**
-     * 驗證並獲取 refresh token
+     * 驗證 refresh token 並輪換為同一 session 的新 token
      */
-    public RefreshToken verifyRefreshToken(String token) {
-        RefreshToken refreshToken = refreshTokenRepository.findByToken(token)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "無效的 Refresh Token"));
+    @Transactional(dontRollbackOn = ResponseStatusException.class)
+    public IssuedToken rotateRefreshToken(String token) {
+        byte[] tokenHash = hash(token);
+        LocalDateTime now = LocalDateTime.now();
 
-        if (refreshToken.isRevoked()) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh Token 已被撤銷");
+        RefreshTokenCache.Entry session = refreshTokenCache.get(tokenHash);
+        if (session != null && !tokenVersionRegistry.isCurrent(session.userId(), session.tokenVersion())) {
+            // 用戶已被停用、重置密碼或變更角色，重新讀取
+            refreshTokenCache.invalidate(tokenHash);
+            session = null;
+        }
+        if (session == null) {
+            RefreshToken refreshToken = refreshTokenRepository.findByTokenHash(tokenHash)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "無效的 Refresh Token"));
+            if (refreshToken.isRevoked()) {
+                throw reused(refreshToken, now);
+            }
+            session = toEntry(refreshToken, System.nanoTime());
         }
 
-        if (refreshToken.isExpired()) {
+        if (session.expiresAt().isBefore(now)) {
+            refreshTokenCache.invalidate(tokenHash);
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh Token 已過期");
         }
 
-        return refreshToken;
+        refreshTokenCache.invalidate(tokenHash);
+        if (refreshTokenRepository.markRotated(session.tokenId(), now) == 0) {
+            // 快取命中後才被其他請求或節點輪換、撤銷
+            RefreshToken refreshToken = refreshTokenRepository.findByTokenHash(tokenHash)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "無效的 Refresh Token"));
+            throw reused(refreshToken, now);
+        }
+
+        User user = userRepository.getReferenceById(session.userId());
+        return issue(user, session);
+    }
+
+    /**
+     * 撤銷單一 session（目前裝置登出）
+     */
+    @Transactional
+    public void revokeSession(User user, String sessionId) {
+        refreshTokenRepository.deleteByUserAndSessionId(user, sessionId);
     }
 
     /**
-     * 撤銷用戶的 refresh token
+     * 撤銷用戶所有的 refresh token
      */
     @Transactional
     public void revokeRefreshToken(User user) {
         refreshTokenRepository.deleteByUser(user);
     }
 
+    private IssuedToken issue(User user, RefreshTokenCache.Entry session) {
+        String token = generateToken();
+        byte[] tokenHash = hash(token);
+
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setUser(user);
+        refreshToken.setTokenHash(tokenHash);
+        refreshToken.setSessionId(session.sessionId());
+        refreshToken.setExpiresAt(session.expiresAt());
+        refreshToken.setRevoked(false);
+        refreshTokenRepository.save(refreshToken);
+
+        RefreshTokenCache.Entry issued = new RefreshTokenCache.Entry(refreshToken.getId(), session.sessionId(),
+                refreshToken.getExpiresAt(), session.userId(), session.email(), session.name(), session.role(),
+                session.tokenVersion(), session.loadedAt());
+        refreshTokenCache.put(tokenHash, issued);
+        return new IssuedToken(token, issued);
+    }
+
     /**
-     * 清理過期的 refresh tokens
+     * 已輪換的 token 被再次使用：寬限時間內視為並行刷新，否則撤銷整個 session 與其 access token
      */
-    @Transactional
-    public void cleanupExpiredTokens() {
-        refreshTokenRepository.deleteExpiredTokens(LocalDateTime.now());
+    private ResponseStatusException reused(RefreshToken refreshToken, LocalDateTime now) {
+        LocalDateTime revokedAt = refreshToken.getRevokedAt();
+        if (revokedAt != null && revokedAt.plusSeconds(reuseGraceSeconds).isAfter(now)) {
+            return new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh Token 已更新");
+        }
+        refreshTokenRepository.deleteByUserAndSessionId(refreshToken.getUser(), refreshToken.getSessionId());
+        accessTokenRevocationService.revokeSession(refreshToken.getSessionId());
+        log.warn("Refresh token reuse detected for user {}, session {} revoked",
+                refreshToken.getUser().getId(), refreshToken.getSessionId());
+        return new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh Token 已被撤銷");
+    }
+
+    private RefreshTokenCache.Entry toEntry(RefreshToken refreshToken, long loadedAt) {
+        User user = refreshToken.getUser();
+        if (!user.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "帳號已停用");
+        }
+        return new RefreshTokenCache.Entry(refreshToken.getId(), refreshToken.getSessionId(), refreshToken.getExpiresAt(),
+                user.getId(), user.getEmail(), user.getName(), user.getRole(),
+                user.getTokenVersion() != null ? user.getTokenVersion() : 0, loadedAt);
+    }
+
+    private static String generateToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static byte[] hash(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
     }
 }
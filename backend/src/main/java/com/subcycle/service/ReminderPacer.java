@@ -0,0 +1,86 @@
+package com.subcycle.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.SplittableRandom;
+
+/**
+ * 提醒郵件的寄送時間分配
+ * 將當天的提醒分散到寄送時段內，而不是在排程觸發時一次寄出；
+ * 每位用戶依 user_id 與日期取得固定的位置（同一用戶當天的郵件一起寄出，排程重跑時時間不變），
+ * 排程在時段開始後才執行時，只分散到剩餘的時段。
+ * 時段以用戶的時區計算，目前用戶尚無時區欄位，統一使用 reminders.send-window.zone。
+ */
+@Component
+public class ReminderPacer {
+
+    @Value("${reminders.send-window.start:09:00}")
+    private String windowStartValue;
+
+    @Value("${reminders.send-window.end:12:00}")
+    private String windowEndValue;
+
+    /**
+     * 預設時區，未設定時使用伺服器時區
+     */
+    @Value("${reminders.send-window.zone:}")
+    private String zoneValue;
+
+    private LocalTime windowStart;
+    private LocalTime windowEnd;
+    private ZoneId zone;
+
+    @PostConstruct
+    void init() {
+        windowStart = LocalTime.parse(windowStartValue);
+        windowEnd = LocalTime.parse(windowEndValue);
+        if (!windowEnd.isAfter(windowStart)) {
+            throw new IllegalStateException("reminders.send-window.end 必須晚於 start");
+        }
+        zone = zoneValue == null || zoneValue.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zoneValue);
+    }
+
+    /**
+     * 用戶當天提醒郵件的寄送時間（伺服器時區，與 email_outbox.next_attempt_at 相同）
+     */
+    public LocalDateTime sendAt(Long userId, LocalDate day) {
+        return sendAt(userId, day, zone);
+    }
+
+    /**
+     * 依用戶時區計算寄送時間，時段已過時立即寄送
+     */
+    public LocalDateTime sendAt(Long userId, LocalDate day, ZoneId userZone) {
+        ZonedDateTime now = ZonedDateTime.now(userZone);
+        ZonedDateTime start = day.atTime(windowStart).atZone(userZone);
+        ZonedDateTime end = day.atTime(windowEnd).atZone(userZone);
+        if (now.isAfter(start)) {
+            start = now;
+        }
+        if (!end.isAfter(start)) {
+            return LocalDateTime.now();
+        }
+
+        long span = Duration.between(start, end).toMillis();
+        long offset = (long) (slot(userId, day) * span);
+        return start.plusNanos(offset * 1_000_000)
+                .withZoneSameInstant(ZoneId.systemDefault())
+                .toLocalDateTime();
+    }
+
+    /**
+     * 用戶當天在時段中的位置 [0, 1)
+     */
+    private static double slot(Long userId, LocalDate day) {
+        long seed = (userId != null ? userId : 0L) * 31 + day.toEpochDay();
+        return new SplittableRandom(seed).nextDouble();
+    }
+}
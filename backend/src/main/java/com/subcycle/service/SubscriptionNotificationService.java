@@ -1,15 +1,23 @@
 package com.subcycle.service;
 
+import com.subcycle.dto.PaymentReminder;
 import com.subcycle.entity.Subscription;
-import com.subcycle.entity.User;
+import com.subcycle.entity.SubscriptionStatus;
 import com.subcycle.repository.SubscriptionRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -20,99 +28,214 @@ import java.util.List;
 @Slf4j
 public class SubscriptionNotificationService {
 
+    private static final String REMINDER_JOB = "payment-reminder";
+
+    private static final int DEFAULT_NOTIFICATION_DAYS = 7;
+
+    /**
+     * 提醒天數上限（與 UserService 的驗證範圍一致），決定 remind_on 範圍查詢的下限
+     */
+    private static final int MAX_NOTIFICATION_DAYS = 30;
+
     @Autowired
     private SubscriptionRepository subscriptionRepository;
 
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private PartitionedJobRunner jobRunner;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JobLeaseService jobLeaseService;
+
+    @Autowired
+    private ReminderPacer reminderPacer;
+
+    @Value("${reminders.cron:0 0 9 * * ?}")
+    private String cron;
+
     /**
-     * 每天上午 9:00 執行，檢查即將到期的訂閱並發送通知
+     * 每天依 reminders.cron 執行（預設上午 9:00），檢查即將到期的訂閱並排入通知
+     * 依用戶分區並行處理，每個分區各自一個交易；多節點部署時每天只由取得租約的節點發送
+     * 郵件依 ReminderPacer 分散在寄送時段內，由 email_outbox 在各自的時間寄出
      */
-    @Scheduled(cron = "0 0 9 * * ?")
-    @Transactional
+    @Scheduled(cron = "${reminders.cron:0 0 9 * * ?}")
     public void sendUpcomingPaymentNotifications() {
+        LocalDate today = LocalDate.now();
+        jobLeaseService.runExclusive(REMINDER_JOB, today.toString(), () -> sendUpcomingPaymentNotifications(today));
+    }
+
+    /**
+     * 啟動時補跑：今天的排程時間已過但批次尚未完成（例如排程時節點正在重啟），
+     * 已排入的提醒已標記 reminderSent，補跑只處理剩下的部分；reminders.cron 設為 "-" 時停用
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeMissedRun() {
+        if (Scheduled.CRON_DISABLED.equals(cron)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime scheduled = CronExpression.parse(cron).next(now.toLocalDate().atStartOfDay().minusNanos(1));
+        if (scheduled != null && scheduled.isBefore(now)) {
+            Thread.ofVirtual().name("payment-reminder-resume").start(this::sendUpcomingPaymentNotifications);
+        }
+    }
+
+    private void sendUpcomingPaymentNotifications(LocalDate today) {
         log.info("開始檢查即將到期的訂閱...");
 
-        LocalDate today = LocalDate.now();
+        int filled = subscriptionRepository.fillMissingRemindOn();
+        if (filled > 0) {
+            log.info("補上 {} 筆訂閱的提醒日", filled);
+        }
 
-        // 查找所有活躍的訂閱
-        List<Subscription> allSubscriptions = subscriptionRepository.findByStatus("active");
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
 
-        int notificationsSent = 0;
+        PartitionedJobRunner.RunSummary summary = jobRunner.run(REMINDER_JOB, partition -> {
+            jobLeaseService.checkLease(REMINDER_JOB);
+            Integer sent = transaction.execute(status -> sendNotifications(partition, today));
+            return sent != null ? sent : 0;
+        });
 
-        for (Subscription subscription : allSubscriptions) {
-            // 檢查是否需要發送通知
-            if (shouldSendNotification(subscription, today)) {
-                try {
-                    sendPaymentReminderEmail(subscription);
+        log.info("通知檢查完成，共排入 {} 封郵件", summary.processed());
+        if (summary.failed() > 0) {
+            // 不記錄完成，重試時只處理尚未標記 reminderSent 的提醒
+            throw new IllegalStateException("通知檢查有 " + summary.failed() + " 個分區失敗");
+        }
+    }
+
+    /**
+     * 處理單一分區今天需要提醒的訂閱（依 remind_on 索引查詢，不掃描所有活躍訂閱）
+     * 候選資料一次查出，郵件在同一交易中寫入 email_outbox，最後以一個 UPDATE 標記已發送
+     * 開啟合併提醒的用戶，同一天的多筆提醒合併為一封摘要郵件
+     * @return 發送郵件數量
+     */
+    private int sendNotifications(PartitionedJobRunner.Partition partition, LocalDate today) {
+        List<PaymentReminder> reminders = subscriptionRepository.findDueReminders(
+                SubscriptionStatus.ACTIVE, today.minusDays(MAX_NOTIFICATION_DAYS), today,
+                partition.count(), partition.index());
+
+        List<Long> sentIds = new ArrayList<>();
+        int emailsSent = 0;
+
+        // 查詢依用戶排序，逐一取出同一用戶的提醒
+        int from = 0;
+        while (from < reminders.size()) {
+            Long userId = reminders.get(from).getUserId();
+            int to = from;
+            List<PaymentReminder> due = new ArrayList<>();
+            while (to < reminders.size() && reminders.get(to).getUserId().equals(userId)) {
+                // 檢查是否需要發送通知（啟用通知、尚未發送等條件已在查詢中過濾）
+                if (shouldSendNotification(reminders.get(to), today)) {
+                    due.add(reminders.get(to));
+                }
+                to++;
+            }
+            from = to;
+            if (due.isEmpty()) {
+                continue;
+            }
+            LocalDateTime sendAt = reminderPacer.sendAt(userId, today);
 
-                    // 標記為已發送
-                    subscription.setReminderSent(true);
-                    subscriptionRepository.save(subscription);
+            if (due.size() > 1 && Boolean.TRUE.equals(due.get(0).getReminderDigest())) {
+                try {
+                    sendReminderDigestEmail(due, sendAt);
+                    due.forEach(reminder -> sentIds.add(reminder.getSubscriptionId()));
+                    emailsSent++;
+                } catch (Exception e) {
+                    log.error("發送摘要通知失敗: 用戶ID={}, 錯誤={}", userId, e.getMessage(), e);
+                }
+                continue;
+            }
 
-                    notificationsSent++;
+            for (PaymentReminder reminder : due) {
+                try {
+                    sendPaymentReminderEmail(reminder, sendAt);
+                    sentIds.add(reminder.getSubscriptionId());
+                    emailsSent++;
                 } catch (Exception e) {
                     log.error("發送通知失敗: 訂閱ID={}, 錯誤={}",
-                            subscription.getId(), e.getMessage(), e);
+                            reminder.getSubscriptionId(), e.getMessage(), e);
                 }
             }
         }
 
-        log.info("通知檢查完成，共發送 {} 封郵件", notificationsSent);
+        // 標記為已發送
+        if (!sentIds.isEmpty()) {
+            subscriptionRepository.markReminderSent(sentIds);
+        }
+
+        return emailsSent;
     }
 
     /**
      * 判斷是否應該發送通知
      */
-    private boolean shouldSendNotification(Subscription subscription, LocalDate today) {
-        // 1. 檢查訂閱是否啟用通知
-        if (subscription.getNotificationEnabled() == null || !subscription.getNotificationEnabled()) {
-            return false;
-        }
-
-        // 2. 檢查是否已經發送過提醒
-        if (subscription.getReminderSent() != null && subscription.getReminderSent()) {
-            return false;
-        }
-
-        // 3. 檢查下次付款日期是否存在
-        LocalDate nextPaymentDate = subscription.getNextPaymentDate();
+    private boolean shouldSendNotification(PaymentReminder reminder, LocalDate today) {
+        // 檢查下次付款日期是否存在
+        LocalDate nextPaymentDate = reminder.getNextPaymentDate();
         if (nextPaymentDate == null) {
             return false;
         }
 
-        // 4. 獲取用戶的提醒天數設置
-        User user = subscription.getUser();
-        Integer notificationDays = user.getNotificationDays();
-        if (notificationDays == null || notificationDays < 0) {
-            notificationDays = 7; // 默認7天
-        }
-
-        // 5. 計算通知日期（下次付款日期前N天）
-        LocalDate notificationDate = nextPaymentDate.minusDays(notificationDays);
+        // 依用戶的提醒天數計算通知日期（下次付款日期前N天）
+        LocalDate notificationDate = remindOn(nextPaymentDate, reminder.getNotificationDays());
 
-        // 6. 判斷今天是否是通知日期或之後（防止錯過通知）
+        // 判斷今天是否是通知日期或之後（防止錯過通知）
         return !today.isBefore(notificationDate) && !today.isAfter(nextPaymentDate);
     }
 
+    /**
+     * 提醒日：下次付款日期前N天，提醒天數未設定或小於 0 時默認 7 天
+     */
+    public static LocalDate remindOn(LocalDate nextPaymentDate, Integer notificationDays) {
+        if (nextPaymentDate == null) {
+            return null;
+        }
+        int days = notificationDays == null || notificationDays < 0 ? DEFAULT_NOTIFICATION_DAYS : notificationDays;
+        return nextPaymentDate.minusDays(days);
+    }
+
     /**
      * 發送付款提醒郵件
      */
-    private void sendPaymentReminderEmail(Subscription subscription) throws Exception {
-        User user = subscription.getUser();
-        LocalDate nextPaymentDate = subscription.getNextPaymentDate();
-        Double amount = subscription.getPrice() != null ? subscription.getPrice().doubleValue() : 0.0;
+    private void sendPaymentReminderEmail(PaymentReminder reminder, LocalDateTime sendAt) throws Exception {
+        Double amount = reminder.getPrice() != null ? reminder.getPrice().doubleValue() : 0.0;
 
         emailService.sendSubscriptionRenewalReminder(
-                user.getEmail(),
-                user.getName(),
-                subscription.getName(),
-                nextPaymentDate,
-                amount
+                reminder.getEmail(),
+                reminder.getUserName(),
+                reminder.getSubscriptionName(),
+                reminder.getNextPaymentDate(),
+                amount,
+                sendAt
         );
 
-        log.info("已發送付款提醒郵件: 用戶={}, 訂閱={}", user.getEmail(), subscription.getName());
+        log.info("已排入付款提醒郵件: 用戶={}, 訂閱={}, 寄送時間={}", reminder.getEmail(), reminder.getSubscriptionName(), sendAt);
+    }
+
+    /**
+     * 發送付款提醒摘要郵件（同一用戶多筆訂閱合併）
+     */
+    private void sendReminderDigestEmail(List<PaymentReminder> reminders, LocalDateTime sendAt) {
+        PaymentReminder first = reminders.get(0);
+        List<EmailService.ReminderItem> items = new ArrayList<>(reminders.size());
+        for (PaymentReminder reminder : reminders) {
+            items.add(new EmailService.ReminderItem(
+                    reminder.getSubscriptionName(),
+                    reminder.getNextPaymentDate(),
+                    reminder.getPrice() != null ? reminder.getPrice().doubleValue() : 0.0,
+                    reminder.getCurrency()
+            ));
+        }
+
+        emailService.sendSubscriptionRenewalDigest(first.getEmail(), first.getUserName(), items, sendAt);
+
+        log.info("已排入付款提醒摘要郵件: 用戶={}, 訂閱數={}, 寄送時間={}", first.getEmail(), reminders.size(), sendAt);
     }
 
     /**
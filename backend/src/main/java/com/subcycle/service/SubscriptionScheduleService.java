@@ -1,16 +1,28 @@
 package com.subcycle.service;
 
+import com.subcycle.entity.BillingCycle;
+import com.subcycle.entity.JobCheckpoint;
 import com.subcycle.entity.Subscription;
+import com.subcycle.entity.SubscriptionStatus;
+import com.subcycle.repository.JobCheckpointRepository;
 import com.subcycle.repository.SubscriptionRepository;
-import com.subcycle.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 排程：自動將已過期的訂閱扣款日往後推至下一次扣款日。
@@ -20,104 +32,263 @@ import java.util.List;
 @SuppressWarnings("null")
 public class SubscriptionScheduleService {
 
+    private static final String ROLLOVER_JOB = "subscription-rollover";
+
+    /**
+     * 整批推進只處理落後一年內的訂閱，限制扣款紀錄展開的步數
+     */
+    private static final int BULK_MAX_LAG_DAYS = 366;
+
     @Autowired
     private SubscriptionRepository subscriptionRepository;
 
+    @Autowired
+    private DashboardStatisticsCache statisticsCache;
+
+    @Autowired
+    private PaymentLedgerService paymentLedgerService;
+
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PartitionedJobRunner jobRunner;
+
+    @Autowired
+    private JobLeaseService jobLeaseService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${rollover.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${rollover.bulk-enabled:true}")
+    private boolean bulkEnabled;
+
     /**
      * 每日淩晨執行，將所有 nextPaymentDate 已過期的訂閱往後推到下一次扣款日。
+     * 先以 SQL 整批推進有閉式解的週期，其餘（月底扣款日、跨越起始日等）再依用戶分區並行處理；
+     * 每個分區依 ID 遞增分批，每批獨立提交並記錄進度，同一天重跑時從上次提交的 ID 之後繼續。
+     * 多節點部署時每天只由取得租約的節點執行。
      */
     @Scheduled(cron = "0 0 3 * * ?")
-    @Transactional
     public void rollOverExpiredNextPaymentDates() {
         LocalDate today = LocalDate.now();
-        List<Subscription> expired = subscriptionRepository.findByNextPaymentDateBefore(today);
+        jobLeaseService.runExclusive(ROLLOVER_JOB, today.toString(), () -> {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
 
-        if (expired.isEmpty()) {
-            return;
+            if (bulkEnabled) {
+                bulkRollOver(today, transaction);
+            }
+
+            PartitionedJobRunner.RunSummary summary =
+                    jobRunner.run(ROLLOVER_JOB, partition -> rollOverPartition(partition, today, transaction));
+            if (summary.failed() > 0) {
+                // 不記錄完成，稍後重試時各分區從檢查點繼續
+                throw new IllegalStateException("扣款日推進有 " + summary.failed() + " 個分區失敗");
+            }
+        });
+    }
+
+    /**
+     * 分批處理單一分區
+     * @return 更新筆數
+     */
+    private int rollOverPartition(PartitionedJobRunner.Partition partition, LocalDate today, TransactionTemplate transaction) {
+        String checkpointName = ROLLOVER_JOB + "-" + partition.index() + "/" + partition.count();
+        long afterId = jobCheckpointRepository.findById(checkpointName)
+                .filter(checkpoint -> today.equals(checkpoint.getRunDate()) && !checkpoint.getCompleted())
+                .map(JobCheckpoint::getLastId)
+                .orElse(0L);
+        if (afterId > 0) {
+            log.info("Subscription schedule: resuming {} after id {}", checkpointName, afterId);
         }
 
-        int updated = rollOverToFuture(expired, today);
+        int updated = 0;
+        while (true) {
+            jobLeaseService.checkLease(ROLLOVER_JOB);
+            long from = afterId;
+            ChunkResult result = transaction.execute(status -> rollOverChunk(partition, checkpointName, today, from));
+            if (result == null || result.lastId() == from) {
+                break;
+            }
+            afterId = result.lastId();
+            updated += result.updated();
+        }
 
-        if (updated > 0) {
-            log.info("Subscription schedule: rolled over {} subscriptions to next cycle", updated);
+        long lastId = afterId;
+        transaction.executeWithoutResult(status -> saveCheckpoint(checkpointName, today, lastId, true));
+        return updated;
+    }
+
+    /**
+     * 以 @Modifying SQL 整批推進，每個週期一個交易：先寫入被跳過的扣款，再標記到期、推進扣款日
+     * 每個週期開始前確認仍持有租約，失去租約即停止
+     */
+    private void bulkRollOver(LocalDate today, TransactionTemplate transaction) {
+        int total = 0;
+        for (BillingCycle cycle : BillingCycle.values()) {
+            jobLeaseService.checkLease(ROLLOVER_JOB);
+            Integer count = transaction.execute(status -> bulkRollOver(cycle, today));
+            total += count != null ? count : 0;
+        }
+        if (total > 0) {
+            statisticsCache.invalidateAll();
         }
     }
 
+    /**
+     * 整批推進單一週期
+     * @return 推進與標記到期的筆數
+     */
+    private int bulkRollOver(BillingCycle cycle, LocalDate today) {
+        int ledgerEntries = paymentLedgerService.recordSkippedCharges(cycle, today, BULK_MAX_LAG_DAYS);
+        String expiredStatus = SubscriptionStatus.EXPIRED.getDbCode();
+        int expired;
+        int advanced;
+        if (cycle.getStepDays() > 0) {
+            expired = subscriptionRepository.expireDayCycle(
+                    cycle.getDbCode(), cycle.getStepDays(), today, BULK_MAX_LAG_DAYS, expiredStatus);
+            advanced = subscriptionRepository.advanceDayCycle(
+                    cycle.getDbCode(), cycle.getStepDays(), today, BULK_MAX_LAG_DAYS);
+        } else {
+            expired = subscriptionRepository.expireMonthCycle(
+                    cycle.getDbCode(), cycle.getStepMonths(), today, BULK_MAX_LAG_DAYS, expiredStatus);
+            advanced = subscriptionRepository.advanceMonthCycle(
+                    cycle.getDbCode(), cycle.getStepMonths(), today, BULK_MAX_LAG_DAYS);
+        }
+        if (advanced > 0 || expired > 0) {
+            log.info("Subscription schedule: bulk rollover {} advanced {}, expired {}, ledger entries {}",
+                    cycle.getCode(), advanced, expired, ledgerEntries);
+        }
+        return advanced + expired;
+    }
+
+    /**
+     * 處理一批過期訂閱並在同一交易中更新進度，結束前清空持久化上下文
+     */
+    private ChunkResult rollOverChunk(PartitionedJobRunner.Partition partition, String checkpointName,
+                                      LocalDate today, long afterId) {
+        List<Subscription> chunk = subscriptionRepository.findExpiredAfterId(
+                today, afterId, partition.count(), partition.index(), PageRequest.of(0, chunkSize));
+        if (chunk.isEmpty()) {
+            return new ChunkResult(afterId, 0);
+        }
+        int updated = rollOverToFuture(chunk, today);
+        long lastId = chunk.get(chunk.size() - 1).getId();
+        saveCheckpoint(checkpointName, today, lastId, false);
+
+        entityManager.flush();
+        entityManager.clear();
+        return new ChunkResult(lastId, updated);
+    }
+
+    private void saveCheckpoint(String checkpointName, LocalDate today, long lastId, boolean completed) {
+        jobCheckpointRepository.save(new JobCheckpoint(checkpointName, today, lastId, completed, null));
+    }
+
+    private record ChunkResult(long lastId, int updated) {
+    }
+
     /**
      * 提供手動觸發：只處理單一用戶的過期訂閱。
+     * 只接收用戶 ID，訂閱在本交易中讀取（背景執行時不使用請求的持久化上下文中的實體）
      * @return 更新筆數
      */
     @Transactional
-    public int rollOverExpiredForUser(User user) {
+    public int rollOverExpiredForUser(Long userId) {
         LocalDate today = LocalDate.now();
-        List<Subscription> expired = subscriptionRepository.findByUserAndNextPaymentDateBefore(user, today);
+        List<Subscription> expired = subscriptionRepository.findByUserIdAndNextPaymentDateBefore(userId, today);
         if (expired.isEmpty()) {
             return 0;
         }
         int updated = rollOverToFuture(expired, today);
         if (updated > 0) {
-            log.info("Manual rollover: user {} rolled over {} subscriptions", user.getId(), updated);
+            log.info("Manual rollover: user {} rolled over {} subscriptions", userId, updated);
         }
         return updated;
     }
 
+    /**
+     * 推進後的扣款日（純運算，不修改訂閱）：第一個不早於今天的扣款日；
+     * 超過到期日時返回 null，表示推進後會標記為已到期
+     */
+    public static LocalDate effectiveNextPaymentDate(Subscription sub, LocalDate today) {
+        LocalDate nextDate = sub.getNextPaymentDate();
+        if (nextDate == null || !nextDate.isBefore(today)) {
+            return nextDate;
+        }
+        LocalDate candidate = BillingCycle.orMonthly(sub.getBillingCycle()).firstOnOrAfter(nextDate, today);
+        if (sub.getEndDate() != null && candidate.isAfter(sub.getEndDate())) {
+            return null;
+        }
+        return candidate;
+    }
+
     private int rollOverToFuture(List<Subscription> subs, LocalDate today) {
         int updatedCount = 0;
+        Set<Long> affectedUserIds = new HashSet<>();
+        List<Long> updatedIds = new ArrayList<>();
+        List<PaymentLedgerService.Charge> skippedCharges = new ArrayList<>();
 
         for (Subscription sub : subs) {
             LocalDate nextDate = sub.getNextPaymentDate();
-            LocalDate endDate = sub.getEndDate();
             if (nextDate == null) {
                 continue;
             }
 
-            String cycle = sub.getBillingCycle() != null ? sub.getBillingCycle() : "monthly";
-
             boolean statusChanged = false;
             boolean dateCleared = false;
             LocalDate originalNext = nextDate;
 
-            // 持續往後推直到日期不再落於今天之前
-            while (nextDate.isBefore(today)) {
-                LocalDate candidate = getNextPaymentDate(nextDate, cycle);
+            // 直接跳到第一個不早於今天的扣款日
+            if (nextDate.isBefore(today)) {
+                // 先計算被跳過的扣款（需以推進前的扣款日定位），整批一次寫入
+                skippedCharges.addAll(paymentLedgerService.charges(sub, originalNext, today.minusDays(1), today));
+
+                LocalDate candidate = effectiveNextPaymentDate(sub, today);
 
                 // 若設定到期日且下一個扣款日會超過到期日，標記為已到期，不再更新下一次扣款日
-                if (endDate != null && candidate.isAfter(endDate)) {
-                    if (!"expired".equalsIgnoreCase(sub.getStatus())) {
-                        sub.setStatus("expired");
+                if (candidate == null) {
+                    if (sub.getStatus() != SubscriptionStatus.EXPIRED) {
+                        sub.setStatus(SubscriptionStatus.EXPIRED);
                         statusChanged = true;
                     }
                     sub.setNextPaymentDate(null);
                     dateCleared = true;
                     nextDate = null; // 不更新 nextPaymentDate
-                    break;
+                } else {
+                    nextDate = candidate;
                 }
-                nextDate = candidate;
             }
 
             if (nextDate != null && !nextDate.equals(originalNext)) {
                 sub.setNextPaymentDate(nextDate);
                 sub.setReminderSent(false);
                 updatedCount++;
+                updatedIds.add(sub.getId());
+                affectedUserIds.add(sub.getUser().getId());
             } else if (statusChanged || dateCleared) {
+                sub.setRemindOn(null);
                 updatedCount++;
+                affectedUserIds.add(sub.getUser().getId());
             }
         }
 
+        paymentLedgerService.recordCharges(skippedCharges);
         if (updatedCount > 0) {
             subscriptionRepository.saveAll(subs);
+            if (!updatedIds.isEmpty()) {
+                // 提醒日依用戶的提醒天數在資料庫計算，不逐筆載入用戶
+                subscriptionRepository.flush();
+                subscriptionRepository.syncRemindOn(updatedIds);
+            }
+            statisticsCache.invalidateAll(affectedUserIds);
         }
         return updatedCount;
     }
-
-    private LocalDate getNextPaymentDate(LocalDate current, String cycle) {
-        return switch (cycle.toLowerCase()) {
-            case "daily" -> current.plusDays(1);
-            case "weekly" -> current.plusWeeks(1);
-            case "monthly" -> current.plusMonths(1);
-            case "quarterly" -> current.plusMonths(3);
-            case "yearly" -> current.plusYears(1);
-            default -> current.plusMonths(1);
-        };
-    }
 }
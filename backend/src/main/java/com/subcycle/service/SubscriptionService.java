@@ -3,12 +3,16 @@ package com.subcycle.service;
 import com.subcycle.dto.CategoryResponse;
 import com.subcycle.dto.SubscriptionRequest;
 import com.subcycle.dto.SubscriptionResponse;
+import com.subcycle.entity.BillingCycle;
 import com.subcycle.entity.Category;
 import com.subcycle.entity.Subscription;
+import com.subcycle.entity.SubscriptionStatus;
 import com.subcycle.entity.User;
 import com.subcycle.repository.CategoryRepository;
+import com.subcycle.repository.PaymentLedgerRepository;
 import com.subcycle.repository.SubscriptionRepository;
 import com.subcycle.specification.SubscriptionSpecification;
+import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -20,6 +24,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -35,18 +41,36 @@ public class SubscriptionService {
     private CategoryRepository categoryRepository;
 
     @Autowired
-    private SubscriptionScheduleService scheduleService;
+    private PaymentLedgerRepository paymentLedgerRepository;
 
+    @Autowired
+    private UserRolloverDispatcher rolloverDispatcher;
+
+    @Autowired
+    private DashboardStatisticsCache statisticsCache;
+
+    /**
+     * 訂閱列表
+     * 過期的扣款日以推進後的結果回傳，實際寫回交由背景推進，不阻塞請求
+     */
     public List<SubscriptionResponse> getSubscriptions(User user) {
-        // 自動推進過期的訂閱日期
-        int updated = scheduleService.rollOverExpiredForUser(user);
-        if (updated > 0) {
-            System.out.println("自動推進了 " + updated + " 個過期訂閱 (用戶: " + user.getId() + ")");
+        LocalDate today = LocalDate.now();
+        List<Subscription> subscriptions = subscriptionRepository.findByUserOrderByNextPaymentDateAsc(user);
+
+        boolean hasExpired = subscriptions.stream()
+                .anyMatch(s -> s.getNextPaymentDate() != null && s.getNextPaymentDate().isBefore(today));
+        if (!hasExpired) {
+            return subscriptions.stream()
+                    .map(this::toResponse)
+                    .collect(Collectors.toList());
         }
 
-        return subscriptionRepository.findByUserOrderByNextPaymentDateAsc(user)
-                .stream()
-                .map(this::toResponse)
+        rolloverDispatcher.dispatch(user.getId());
+        // 與資料庫排序一致：未設定扣款日的排在最前
+        return subscriptions.stream()
+                .map(s -> toResponse(s, today))
+                .sorted(Comparator.comparing(SubscriptionResponse::getNextPaymentDate,
+                        Comparator.nullsFirst(Comparator.naturalOrder())))
                 .collect(Collectors.toList());
     }
 
@@ -86,6 +110,8 @@ public class SubscriptionService {
         subscription.setUser(user);
         applyRequest(subscription, user, request);
         subscription = subscriptionRepository.save(subscription);
+        statisticsCache.invalidate(user.getId());
+        rolloverDispatcher.forget(user.getId());
         return toResponse(subscription);
     }
 
@@ -95,13 +121,19 @@ public class SubscriptionService {
 
         applyRequest(subscription, user, request);
         subscription = subscriptionRepository.save(subscription);
+        statisticsCache.invalidate(user.getId());
+        rolloverDispatcher.forget(user.getId());
         return toResponse(subscription);
     }
 
+    @Transactional
     public void deleteSubscription(User user, Long id) {
         Subscription subscription = subscriptionRepository.findByIdAndUser(id, user)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "找不到訂閱"));
+        paymentLedgerRepository.deleteBySubscriptionId(subscription.getId());
         subscriptionRepository.delete(subscription);
+        statisticsCache.invalidate(user.getId());
+        rolloverDispatcher.forget(user.getId());
     }
 
     public int updateNotificationEnabled(User user, boolean enabled) {
@@ -133,11 +165,12 @@ public class SubscriptionService {
         subscription.setName(request.getName());
         subscription.setPrice(Optional.ofNullable(request.getAmount()).orElse(BigDecimal.ZERO));
         subscription.setCurrency(Optional.ofNullable(request.getCurrency()).orElse("TWD"));
-        subscription.setBillingCycle(Optional.ofNullable(request.getCycle()).orElse("monthly"));
+        subscription.setBillingCycle(parseCycle(request.getCycle()));
         subscription.setNextPaymentDate(request.getNextPaymentDate());
+        subscription.setRemindOn(SubscriptionNotificationService.remindOn(request.getNextPaymentDate(), user.getNotificationDays()));
         subscription.setStartDate(Optional.ofNullable(request.getStartDate()).orElse(request.getNextPaymentDate()));
         subscription.setEndDate(request.getEndDate());
-        subscription.setStatus(Optional.ofNullable(request.getStatus()).orElse("active"));
+        subscription.setStatus(parseStatus(request.getStatus()));
         subscription.setAutoRenew(Optional.ofNullable(request.getAutoRenew()).orElse(true));
         subscription.setReminderSent(Optional.ofNullable(request.getReminderSent()).orElse(false));
         subscription.setNotificationEnabled(Optional.ofNullable(request.getNotificationEnabled()).orElse(true));
@@ -152,17 +185,45 @@ public class SubscriptionService {
         }
     }
 
+    /**
+     * 未指定時為每月，無法辨識的週期不改寫為預設值
+     */
+    private static BillingCycle parseCycle(String code) {
+        if (code == null) {
+            return BillingCycle.MONTHLY;
+        }
+        BillingCycle cycle = BillingCycle.parse(code);
+        if (cycle == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "無效的計費週期: " + code);
+        }
+        return cycle;
+    }
+
+    /**
+     * 未指定（與 SubscriptionRequest 的驗證規則相同，空字串也視為未指定）時為啟用中，無法辨識的狀態不改寫為預設值
+     */
+    private static SubscriptionStatus parseStatus(String code) {
+        if (code == null || code.isEmpty()) {
+            return SubscriptionStatus.ACTIVE;
+        }
+        SubscriptionStatus status = SubscriptionStatus.parse(code);
+        if (status == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "無效的訂閱狀態: " + code);
+        }
+        return status;
+    }
+
     private SubscriptionResponse toResponse(Subscription subscription) {
         SubscriptionResponse response = new SubscriptionResponse();
         response.setId(subscription.getId());
         response.setName(subscription.getName());
         response.setPrice(subscription.getPrice());
         response.setCurrency(subscription.getCurrency());
-        response.setBillingCycle(subscription.getBillingCycle());
+        response.setBillingCycle(subscription.getBillingCycle() != null ? subscription.getBillingCycle().getCode() : null);
         response.setNextPaymentDate(subscription.getNextPaymentDate());
         response.setStartDate(subscription.getStartDate());
         response.setEndDate(subscription.getEndDate());
-        response.setStatus(subscription.getStatus());
+        response.setStatus(subscription.getStatus() != null ? subscription.getStatus().getCode() : null);
         response.setAutoRenew(subscription.getAutoRenew());
         response.setReminderSent(subscription.getReminderSent());
         response.setNotificationEnabled(subscription.getNotificationEnabled());
@@ -181,4 +242,22 @@ public class SubscriptionService {
 
         return response;
     }
+
+    /**
+     * 套用推進後的扣款日與到期狀態（僅影響回應，不修改訂閱）
+     */
+    private SubscriptionResponse toResponse(Subscription subscription, LocalDate today) {
+        SubscriptionResponse response = toResponse(subscription);
+        LocalDate nextPayment = subscription.getNextPaymentDate();
+        if (nextPayment != null && nextPayment.isBefore(today)) {
+            LocalDate effective = SubscriptionScheduleService.effectiveNextPaymentDate(subscription, today);
+            response.setNextPaymentDate(effective);
+            if (effective == null) {
+                response.setStatus(SubscriptionStatus.EXPIRED.getCode());
+            } else {
+                response.setReminderSent(false);
+            }
+        }
+        return response;
+    }
 }
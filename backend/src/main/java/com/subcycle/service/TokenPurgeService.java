@@ -0,0 +1,113 @@
+package com.subcycle.service;
+
+import com.subcycle.repository.DeletedUserRepository;
+import com.subcycle.repository.EmailVerificationTokenRepository;
+import com.subcycle.repository.RefreshTokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * 排程：清除已過期的 refresh token、Email 驗證 token 與已刪除用戶的紀錄。
+ * 以 DELETE ... LIMIT 分批刪除，每批獨立提交並在批次之間暫停，不會長時間鎖住資料表；
+ * 多節點部署時每天只由取得租約的節點執行。
+ */
+@Service
+@Slf4j
+public class TokenPurgeService {
+
+    private static final String PURGE_JOB = "token-purge";
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private EmailVerificationTokenRepository emailVerificationTokenRepository;
+
+    @Autowired
+    private DeletedUserRepository deletedUserRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JobLeaseService jobLeaseService;
+
+    @Value("${tokens.purge.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${tokens.purge.pause-ms:100}")
+    private long pauseMillis;
+
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    /**
+     * 每日執行，清除執行當下已過期的 token
+     */
+    @Scheduled(cron = "${tokens.purge.cron:0 30 3 * * ?}")
+    public void purgeExpiredTokens() {
+        LocalDate today = LocalDate.now();
+        jobLeaseService.runExclusive(PURGE_JOB, today.toString(), () -> {
+            long start = System.nanoTime();
+            LocalDateTime now = LocalDateTime.now();
+
+            long refreshTokens = purge(refreshTokenRepository::deleteExpiredBatch, now);
+            long verificationTokens = purge(emailVerificationTokenRepository::deleteExpiredBatch, now);
+            long deletedUsers = purge(deletedUserRepository::deleteExpiredBatch, now);
+
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            Map<String, Object> run = new LinkedHashMap<>();
+            run.put("runAt", now);
+            run.put("refreshTokens", refreshTokens);
+            run.put("emailVerificationTokens", verificationTokens);
+            run.put("deletedUsers", deletedUsers);
+            run.put("elapsedMillis", elapsedMillis);
+            lastRun = run;
+
+            log.info("Token purge: deleted {} refresh tokens, {} email verification tokens and {} deleted-user records in {} ms",
+                    refreshTokens, verificationTokens, deletedUsers, elapsedMillis);
+        });
+    }
+
+    /**
+     * 分批刪除直到沒有過期的資料
+     * @return 刪除筆數
+     */
+    private long purge(BiFunction<LocalDateTime, Integer, Integer> deleteBatch, LocalDateTime now) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        long deleted = 0;
+        while (true) {
+            jobLeaseService.checkLease(PURGE_JOB);
+            Integer count = transaction.execute(status -> deleteBatch.apply(now, batchSize));
+            int batch = count != null ? count : 0;
+            deleted += batch;
+            if (batch < batchSize) {
+                return deleted;
+            }
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Token purge interrupted after {} rows", deleted);
+                return deleted;
+            }
+        }
+    }
+
+    /**
+     * 上次執行的刪除筆數與耗時
+     */
+    public Map<String, Object> getLastRun() {
+        return lastRun;
+    }
+}
@@ -0,0 +1,110 @@
+package com.subcycle.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 讀取時的非同步推進
+ * 列表 API 發現過期的扣款日時，在背景推進該用戶的訂閱，不阻塞請求；
+ * 同一用戶同時最多一個推進工作，當天已推進過的用戶不再重複執行。
+ * 同時進行的推進數以 rollover.on-read.max-concurrent 限制，已滿時直接略過，避免突增的讀取耗盡請求所需的連線。
+ */
+@Component
+@Slf4j
+public class UserRolloverDispatcher {
+
+    @Autowired
+    private SubscriptionScheduleService scheduleService;
+
+    @Value("${rollover.on-read.max-concurrent:2}")
+    private int maxConcurrent;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private Semaphore permits;
+
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 用戶最後一次推進完成的日期
+     */
+    private final Map<Long, LocalDate> lastRolled = new ConcurrentHashMap<>();
+
+    /**
+     * 上次清除過期紀錄的日期，每天只清一次
+     */
+    private volatile LocalDate prunedOn;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(Math.max(1, maxConcurrent));
+    }
+
+    /**
+     * 排入背景推進
+     * @return 是否已排入（進行中、當天已推進過或並行數已滿時返回 false）
+     */
+    public boolean dispatch(Long userId) {
+        LocalDate today = LocalDate.now();
+        pruneBefore(today);
+        if (today.equals(lastRolled.get(userId)) || !inFlight.add(userId)) {
+            return false;
+        }
+        if (!permits.tryAcquire()) {
+            inFlight.remove(userId);
+            return false;
+        }
+        try {
+            executor.execute(() -> rollOver(userId, today));
+            return true;
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            inFlight.remove(userId);
+            return false;
+        }
+    }
+
+    /**
+     * 用戶的訂閱有異動時清除當天紀錄，讓下次讀取可再推進
+     */
+    public void forget(Long userId) {
+        lastRolled.remove(userId);
+    }
+
+    private void rollOver(Long userId, LocalDate today) {
+        try {
+            scheduleService.rollOverExpiredForUser(userId);
+            lastRolled.put(userId, today);
+        } catch (RuntimeException e) {
+            log.warn("Rollover on read failed for user {}: {}", userId, e.getMessage());
+        } finally {
+            inFlight.remove(userId);
+            permits.release();
+        }
+    }
+
+    private void pruneBefore(LocalDate today) {
+        if (!today.equals(prunedOn)) {
+            prunedOn = today;
+            lastRolled.values().removeIf(date -> date.isBefore(today));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
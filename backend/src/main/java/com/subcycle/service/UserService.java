@@ -4,6 +4,7 @@ import com.subcycle.dto.ChangePasswordRequest;
 import com.subcycle.dto.UpdateProfileRequest;
 import com.subcycle.dto.UserResponse;
 import com.subcycle.entity.User;
+import com.subcycle.repository.SubscriptionRepository;
 import com.subcycle.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -18,9 +19,15 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private DashboardStatisticsCache statisticsCache;
+
     public UserResponse getUserProfile(User user) {
         return toResponse(user);
     }
@@ -29,17 +36,32 @@ public class UserService {
         if (request.getName() != null) {
             user.setName(request.getName());
         }
+        boolean currencyChanged = false;
         if (request.getCurrency() != null) {
+            currencyChanged = !request.getCurrency().equals(user.getCurrency());
             user.setCurrency(request.getCurrency());
         }
+        boolean notificationDaysChanged = false;
         if (request.getNotificationDays() != null) {
             if (request.getNotificationDays() < 0 || request.getNotificationDays() > 30) {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "通知天數必須在 0-30 之間");
             }
+            notificationDaysChanged = !request.getNotificationDays().equals(user.getNotificationDays());
             user.setNotificationDays(request.getNotificationDays());
         }
+        if (request.getReminderDigest() != null) {
+            user.setReminderDigest(request.getReminderDigest());
+        }
 
         user = userRepository.save(user);
+        if (notificationDaysChanged) {
+            // 提醒天數變更後重新計算所有訂閱的提醒日
+            subscriptionRepository.syncRemindOnForUser(user.getId());
+        }
+        if (currencyChanged) {
+            // 儀表板統計以用戶幣別換算，幣別變更後需重新計算
+            statisticsCache.invalidate(user.getId());
+        }
         return toResponse(user);
     }
 
@@ -66,6 +88,7 @@ public class UserService {
                 user.getName(),
                 user.getCurrency(),
                 user.getNotificationDays(),
+                user.getReminderDigest(),
                 user.getRole(),
                 user.getIsActive(),
                 user.getEmailVerified(),
@@ -1,6 +1,8 @@
 package com.subcycle.specification;
 
+import com.subcycle.entity.BillingCycle;
 import com.subcycle.entity.Subscription;
+import com.subcycle.entity.SubscriptionStatus;
 import com.subcycle.entity.User;
 import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.jpa.domain.Specification;
@@ -33,7 +35,10 @@ public class SubscriptionSpecification {
 
             // 篩選狀態
             if (status != null && !status.trim().isEmpty()) {
-                predicates.add(criteriaBuilder.equal(root.get("status"), status));
+                SubscriptionStatus subscriptionStatus = SubscriptionStatus.parse(status.trim());
+                predicates.add(subscriptionStatus != null
+                        ? criteriaBuilder.equal(root.get("status"), subscriptionStatus)
+                        : criteriaBuilder.disjunction());
             }
 
             // 篩選類別
@@ -43,7 +48,10 @@ public class SubscriptionSpecification {
 
             // 篩選計費週期
             if (billingCycle != null && !billingCycle.trim().isEmpty()) {
-                predicates.add(criteriaBuilder.equal(root.get("billingCycle"), billingCycle));
+                BillingCycle cycle = BillingCycle.parse(billingCycle.trim());
+                predicates.add(cycle != null
+                        ? criteriaBuilder.equal(root.get("billingCycle"), cycle)
+                        : criteriaBuilder.disjunction());
             }
 
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
@@ -0,0 +1,4 @@
+-- 郵件預定寄送時間：提醒郵件分散在寄送時段內，寄送延遲以 sent_at - scheduled_at 計算
+
+ALTER TABLE email_outbox ADD COLUMN scheduled_at DATETIME(6) NULL AFTER next_attempt_at;
+UPDATE email_outbox SET scheduled_at = created_at WHERE scheduled_at IS NULL;
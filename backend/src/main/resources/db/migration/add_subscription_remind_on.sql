@@ -0,0 +1,12 @@
+-- 提醒日：next_payment_date 減去用戶的提醒天數（未設定或小於 0 時為 7 天）
+-- 每日提醒工作以 idx_subscriptions_remind_on 範圍查詢當天需要提醒的訂閱，不再掃描所有活躍訂閱
+
+ALTER TABLE subscriptions ADD COLUMN remind_on DATE NULL;
+
+CREATE INDEX idx_subscriptions_remind_on ON subscriptions (remind_on);
+
+UPDATE subscriptions s
+JOIN users u ON u.id = s.user_id
+SET s.remind_on = DATE_SUB(s.next_payment_date, INTERVAL
+    CASE WHEN u.notification_days IS NULL OR u.notification_days < 0 THEN 7 ELSE u.notification_days END DAY)
+WHERE s.next_payment_date IS NOT NULL;
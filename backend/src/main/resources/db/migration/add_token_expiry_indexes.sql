@@ -0,0 +1,4 @@
+-- 過期 token 清除排程依過期時間分批刪除，為兩張表的過期時間欄位建立索引
+
+ALTER TABLE refresh_tokens ADD INDEX idx_refresh_tokens_expires_at (expires_at);
+ALTER TABLE email_verification_tokens ADD INDEX idx_email_verification_tokens_expiry_date (expiry_date);
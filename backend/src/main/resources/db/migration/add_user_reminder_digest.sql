@@ -0,0 +1,3 @@
+-- 合併提醒郵件：開啟後同一天需要提醒的多筆訂閱合併為一封摘要郵件
+
+ALTER TABLE users ADD COLUMN reminder_digest BOOLEAN DEFAULT FALSE;
@@ -0,0 +1,4 @@
+-- Token 版本：access token 帶有簽發時的版本，停用帳號、重置密碼或變更角色時遞增，舊版本的 token 即失效
+
+ALTER TABLE users ADD COLUMN token_version INT DEFAULT 0;
+UPDATE users SET token_version = 0 WHERE token_version IS NULL;
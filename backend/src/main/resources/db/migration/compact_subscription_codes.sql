@@ -0,0 +1,32 @@
+-- 將 subscriptions.billing_cycle 與 status 由完整字串改為單字元代碼
+-- billing_cycle: daily=D, weekly=W, monthly=M, quarterly=Q, yearly=Y
+-- status: active=A, cancelled=C, completed=D, expired=E, paused=P
+
+UPDATE subscriptions
+SET billing_cycle = CASE LOWER(billing_cycle)
+    WHEN 'daily' THEN 'D'
+    WHEN 'weekly' THEN 'W'
+    WHEN 'monthly' THEN 'M'
+    WHEN 'quarterly' THEN 'Q'
+    WHEN 'yearly' THEN 'Y'
+    ELSE 'M'
+END
+WHERE billing_cycle IS NULL OR CHAR_LENGTH(billing_cycle) > 1;
+
+UPDATE subscriptions
+SET status = CASE LOWER(status)
+    WHEN 'active' THEN 'A'
+    WHEN 'cancelled' THEN 'C'
+    WHEN 'completed' THEN 'D'
+    WHEN 'expired' THEN 'E'
+    WHEN 'paused' THEN 'P'
+    ELSE 'A'
+END
+WHERE status IS NULL OR CHAR_LENGTH(status) <> 1;
+
+ALTER TABLE subscriptions
+MODIFY COLUMN billing_cycle CHAR(1) NOT NULL DEFAULT 'M' COMMENT '計費週期代碼（D/W/M/Q/Y）',
+MODIFY COLUMN status CHAR(1) NOT NULL DEFAULT 'A' COMMENT '狀態代碼（A/C/D/E/P）';
+
+CREATE INDEX idx_subscriptions_status ON subscriptions (status);
+CREATE INDEX idx_subscriptions_cycle_next_payment ON subscriptions (billing_cycle, next_payment_date);
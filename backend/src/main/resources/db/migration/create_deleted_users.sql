@@ -0,0 +1,8 @@
+-- 已刪除的用戶：各節點定期載入，拒絕該用戶刪除前簽發的 access token；access token 全部過期後由 TokenPurgeService 刪除
+
+CREATE TABLE IF NOT EXISTS deleted_users (
+    user_id BIGINT PRIMARY KEY,
+    deleted_at DATETIME(6) NOT NULL,
+    expires_at DATETIME(6) NOT NULL,
+    INDEX idx_deleted_users_expires_at (expires_at)
+);
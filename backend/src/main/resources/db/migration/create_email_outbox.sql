@@ -0,0 +1,17 @@
+-- 待寄送郵件表：呼叫端在自己的交易中寫入，背景寄送工作以 SELECT ... FOR UPDATE SKIP LOCKED 取出（需 MySQL 8.0+）
+-- PENDING → SENDING → SENT；失敗時回到 PENDING 並延後 next_attempt_at，超過重試次數為 DEAD
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    recipient VARCHAR(255) NOT NULL,
+    subject VARCHAR(255) NOT NULL,
+    template VARCHAR(100) NOT NULL COMMENT 'Thymeleaf 模板名稱',
+    variables TEXT NULL COMMENT '模板變數（JSON）',
+    status VARCHAR(10) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME(6) NOT NULL COMMENT 'PENDING 為下次寄送時間，SENDING 為取出租約到期時間',
+    last_error VARCHAR(500) NULL,
+    created_at DATETIME(6) NULL,
+    sent_at DATETIME(6) NULL,
+    INDEX idx_email_outbox_status_next_attempt (status, next_attempt_at)
+);
@@ -0,0 +1,10 @@
+-- 匯率表：rate 為 1 單位該幣別可兌換的基準幣別金額（基準幣別由 fx.base-currency 設定，預設 TWD）
+-- 基準幣別本身不需要資料列；查無匯率的幣別會以 1:1 計入並在儀表板標示未換算
+
+CREATE TABLE IF NOT EXISTS exchange_rates (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    currency VARCHAR(3) NOT NULL COMMENT 'ISO 4217 幣別代碼',
+    rate DECIMAL(18, 8) NOT NULL COMMENT '1 單位該幣別兌換的基準幣別金額',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_exchange_rates_currency (currency)
+);
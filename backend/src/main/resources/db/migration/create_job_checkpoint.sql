@@ -0,0 +1,9 @@
+-- 排程工作進度表：分批工作每提交一批即更新 last_id，中斷後同一天重跑會從 last_id 之後繼續
+
+CREATE TABLE IF NOT EXISTS job_checkpoint (
+    job_name VARCHAR(100) PRIMARY KEY,
+    run_date DATE NOT NULL COMMENT '本次執行的基準日',
+    last_id BIGINT NOT NULL COMMENT '最後一個已提交的 ID',
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at TIMESTAMP NULL
+);
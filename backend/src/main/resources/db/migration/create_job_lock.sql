@@ -0,0 +1,11 @@
+-- 排程工作租約表：多節點部署時每個排程批次只由一個節點執行
+-- 時間一律以資料庫的 NOW(3) 計算，不受各節點時鐘誤差影響
+
+CREATE TABLE IF NOT EXISTS job_lock (
+    job_name VARCHAR(100) PRIMARY KEY,
+    owner VARCHAR(128) NULL COMMENT '目前持有租約的節點',
+    run_key VARCHAR(64) NULL COMMENT '目前執行的排程批次',
+    completed_key VARCHAR(64) NULL COMMENT '最後一個執行完成的排程批次',
+    locked_until DATETIME(3) NULL COMMENT '租約到期時間，執行中由心跳延長',
+    heartbeat_at DATETIME(3) NULL
+);
@@ -0,0 +1,14 @@
+-- 扣款紀錄表：排程推進扣款日時寫入已發生的扣款，過去月份的統計直接加總此表
+-- 既有資料可由 POST /api/admin/ledger/backfill（或啟動時 ledger.backfill-on-startup=true）補齊
+
+CREATE TABLE IF NOT EXISTS payment_ledger (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    subscription_id BIGINT NOT NULL COMMENT '訂閱 ID（訂閱刪除時一併刪除）',
+    user_id BIGINT NOT NULL,
+    paid_on DATE NOT NULL COMMENT '扣款日',
+    amount DECIMAL(10, 2) NOT NULL COMMENT '扣款當時的金額',
+    currency VARCHAR(3) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_payment_ledger_subscription_paid_on (subscription_id, paid_on),
+    INDEX idx_payment_ledger_user_paid_on (user_id, paid_on)
+);
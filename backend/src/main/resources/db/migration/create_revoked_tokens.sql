@@ -0,0 +1,11 @@
+-- 登出撤銷的 access token：記錄 jti 與 token 原本的過期時間，過期後由定期重建刪除
+
+CREATE TABLE IF NOT EXISTS revoked_tokens (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    jti VARCHAR(64) NOT NULL,
+    expires_at DATETIME(6) NOT NULL,
+    revoked_at DATETIME(6) NOT NULL,
+    UNIQUE KEY uk_revoked_tokens_jti (jti),
+    INDEX idx_revoked_tokens_expires_at (expires_at),
+    INDEX idx_revoked_tokens_revoked_at (revoked_at)
+);
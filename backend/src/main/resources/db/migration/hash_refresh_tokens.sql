@@ -0,0 +1,20 @@
+-- refresh_tokens 改為只保存 token 的 SHA-256 摘要，並以 session_id 區分登入裝置（每位用戶可有多個 session）
+-- 既有的 token 以摘要保留並各自成為一個 session，已登入的用戶不需重新登入
+-- 須在部署前執行：ddl-auto=update 不會移除舊的 token 欄位（NOT NULL），未執行時無法寫入新的 token
+
+ALTER TABLE refresh_tokens
+    ADD COLUMN token_hash BINARY(32) NULL AFTER user_id,
+    ADD COLUMN session_id VARCHAR(36) NULL AFTER token_hash,
+    ADD COLUMN revoked_at DATETIME(6) NULL;
+
+UPDATE refresh_tokens
+SET token_hash = UNHEX(SHA2(token, 256)),
+    session_id = UUID()
+WHERE token_hash IS NULL;
+
+ALTER TABLE refresh_tokens
+    MODIFY token_hash BINARY(32) NOT NULL,
+    MODIFY session_id VARCHAR(36) NOT NULL,
+    DROP COLUMN token,
+    ADD UNIQUE KEY uk_refresh_tokens_token_hash (token_hash),
+    ADD INDEX idx_refresh_tokens_session_id (session_id);
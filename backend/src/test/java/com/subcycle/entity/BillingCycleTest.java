@@ -0,0 +1,181 @@
+package com.subcycle.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * BillingCycle 閉式運算與原本逐次遞推迴圈的等價性測試
+ * 以固定種子產生大量隨機的起始日與步數（偏重 28 ~ 31 日），逐一與逐次 plusDays / plusMonths 的結果比對
+ */
+class BillingCycleTest {
+
+    private static final int CASES = 20_000;
+
+    private static final LocalDate MIN_DATE = LocalDate.of(1990, 1, 1);
+    private static final LocalDate MAX_DATE = LocalDate.of(2040, 12, 31);
+
+    /**
+     * 原本 DashboardService.getNextPaymentDate 的逐次遞推
+     */
+    private static LocalDate legacyNext(LocalDate current, BillingCycle cycle) {
+        return switch (cycle) {
+            case DAILY -> current.plusDays(1);
+            case WEEKLY -> current.plusWeeks(1);
+            case MONTHLY -> current.plusMonths(1);
+            case QUARTERLY -> current.plusMonths(3);
+            case YEARLY -> current.plusYears(1);
+        };
+    }
+
+    /**
+     * 原本 DashboardService.getPreviousPaymentDate 的逐次遞推
+     */
+    private static LocalDate legacyPrevious(LocalDate current, BillingCycle cycle) {
+        return switch (cycle) {
+            case DAILY -> current.minusDays(1);
+            case WEEKLY -> current.minusWeeks(1);
+            case MONTHLY -> current.minusMonths(1);
+            case QUARTERLY -> current.minusMonths(3);
+            case YEARLY -> current.minusYears(1);
+        };
+    }
+
+    @Test
+    void advanceMatchesIterativeLoop() {
+        SplittableRandom random = new SplittableRandom(20240131L);
+        for (BillingCycle cycle : BillingCycle.values()) {
+            for (int i = 0; i < CASES; i++) {
+                LocalDate anchor = randomDate(random);
+                int steps = random.nextInt(maxSteps(cycle) + 1);
+
+                LocalDate forward = anchor;
+                LocalDate backward = anchor;
+                for (int k = 0; k < steps; k++) {
+                    forward = legacyNext(forward, cycle);
+                    backward = legacyPrevious(backward, cycle);
+                }
+
+                assertEquals(forward, cycle.advance(anchor, steps),
+                        () -> cycle + " advance(" + anchor + ", " + steps + ")");
+                assertEquals(backward, cycle.advance(anchor, -steps),
+                        () -> cycle + " advance(" + anchor + ", -" + steps + ")");
+            }
+        }
+    }
+
+    @Test
+    void firstOnOrAfterMatchesRolloverLoop() {
+        SplittableRandom random = new SplittableRandom(20240229L);
+        for (BillingCycle cycle : BillingCycle.values()) {
+            for (int i = 0; i < CASES; i++) {
+                LocalDate anchor = randomDate(random);
+                LocalDate target = anchor.plusDays(random.nextInt(maxSteps(cycle) * stepDays(cycle) + 1));
+
+                // 原本 SubscriptionScheduleService.rollOverToFuture 的迴圈
+                LocalDate expected = anchor;
+                long steps = 0;
+                while (expected.isBefore(target)) {
+                    expected = legacyNext(expected, cycle);
+                    steps++;
+                }
+
+                assertEquals(steps, cycle.stepsOnOrAfter(anchor, target),
+                        () -> cycle + " stepsOnOrAfter(" + anchor + ", " + target + ")");
+                assertEquals(expected, cycle.firstOnOrAfter(anchor, target),
+                        () -> cycle + " firstOnOrAfter(" + anchor + ", " + target + ")");
+            }
+        }
+    }
+
+    @Test
+    void stepsBackOnOrBeforeMatchesLoop() {
+        SplittableRandom random = new SplittableRandom(19991231L);
+        for (BillingCycle cycle : BillingCycle.values()) {
+            for (int i = 0; i < CASES; i++) {
+                LocalDate anchor = randomDate(random);
+                LocalDate target = anchor.minusDays(random.nextInt(maxSteps(cycle) * stepDays(cycle) + 1));
+
+                LocalDate current = anchor;
+                long steps = 0;
+                while (current.isAfter(target)) {
+                    current = legacyPrevious(current, cycle);
+                    steps++;
+                }
+
+                assertEquals(steps, cycle.stepsBackOnOrBefore(anchor, target),
+                        () -> cycle + " stepsBackOnOrBefore(" + anchor + ", " + target + ")");
+            }
+        }
+    }
+
+    @Test
+    void countBetweenMatchesMonthLoop() {
+        SplittableRandom random = new SplittableRandom(20250331L);
+        for (BillingCycle cycle : BillingCycle.values()) {
+            for (int i = 0; i < CASES; i++) {
+                LocalDate anchor = randomDate(random);
+                LocalDate from = anchor.plusDays(random.nextInt(-400, maxSteps(cycle) * stepDays(cycle) + 1));
+                LocalDate to = from.plusDays(random.nextInt(-5, 120));
+
+                // 原本 calculateMonthPayments 的迴圈：從 anchor 逐次往後，計算落在 [from, to] 的次數
+                long expected = 0;
+                for (LocalDate current = anchor; !current.isAfter(to); current = legacyNext(current, cycle)) {
+                    if (!current.isBefore(from)) {
+                        expected++;
+                    }
+                }
+
+                assertEquals(expected, cycle.countBetween(anchor, from, to),
+                        () -> cycle + " countBetween(" + anchor + ", " + from + ", " + to + ")");
+            }
+        }
+    }
+
+    @Test
+    void monthEndClampIsNotRestored() {
+        LocalDate anchor = LocalDate.of(2025, 1, 31);
+
+        assertEquals(LocalDate.of(2025, 2, 28), BillingCycle.MONTHLY.advance(anchor, 1));
+        assertEquals(LocalDate.of(2025, 3, 28), BillingCycle.MONTHLY.advance(anchor, 2));
+        assertEquals(LocalDate.of(2026, 1, 28), BillingCycle.MONTHLY.advance(anchor, 12));
+        assertEquals(LocalDate.of(2025, 4, 30), BillingCycle.QUARTERLY.advance(anchor, 1));
+        assertEquals(LocalDate.of(2025, 7, 30), BillingCycle.QUARTERLY.advance(anchor, 2));
+        assertEquals(LocalDate.of(2025, 2, 28), BillingCycle.YEARLY.advance(LocalDate.of(2024, 2, 29), 1));
+        assertEquals(LocalDate.of(2028, 2, 28), BillingCycle.YEARLY.advance(LocalDate.of(2024, 2, 29), 4));
+        assertEquals(LocalDate.of(2025, 3, 28),
+                BillingCycle.MONTHLY.firstOnOrAfter(anchor, LocalDate.of(2025, 3, 1)));
+    }
+
+    /**
+     * 隨機日期，一半落在月底附近（28 ~ 31 日）
+     */
+    private static LocalDate randomDate(SplittableRandom random) {
+        LocalDate date = MIN_DATE.plusDays(random.nextLong(MAX_DATE.toEpochDay() - MIN_DATE.toEpochDay()));
+        if (random.nextBoolean()) {
+            int day = Math.min(28 + random.nextInt(4), date.lengthOfMonth());
+            date = date.withDayOfMonth(day);
+        }
+        return date;
+    }
+
+    private static int maxSteps(BillingCycle cycle) {
+        return switch (cycle) {
+            case DAILY -> 3000;
+            case WEEKLY -> 500;
+            case MONTHLY -> 120;
+            case QUARTERLY -> 60;
+            case YEARLY -> 40;
+        };
+    }
+
+    /**
+     * 每步大約的天數，用來產生與步數範圍相當的目標日期
+     */
+    private static int stepDays(BillingCycle cycle) {
+        return cycle.getStepDays() > 0 ? cycle.getStepDays() : cycle.getStepMonths() * 31;
+    }
+}
@@ -0,0 +1,165 @@
+package com.subcycle.security;
+
+import com.subcycle.repository.RevokedTokenRepository;
+import com.subcycle.support.EmbeddedMariaDb;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Access token 撤銷測試：對嵌入式 MariaDB 的 revoked_tokens 執行，
+ * 確認同步讀到其他節點的撤銷，以及重建期間寫入的撤銷會出現在新的 Bloom filter 中
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AccessTokenRevocationServiceTest {
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        EmbeddedMariaDb.register(registry, "token_revocation_test");
+    }
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    /**
+     * 轉呼叫實際 repository，個別測試再攔截特定查詢
+     */
+    private RevokedTokenRepository repository;
+
+    private AccessTokenRevocationService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(RevokedTokenRepository.class, delegatesTo(revokedTokenRepository));
+        service = new AccessTokenRevocationService();
+        ReflectionTestUtils.setField(service, "revokedTokenRepository", repository);
+        ReflectionTestUtils.setField(service, "expectedEntries", 1_000L);
+        ReflectionTestUtils.setField(service, "maxEntries", 10_000L);
+        ReflectionTestUtils.setField(service, "falsePositiveRate", 0.01);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        revokedTokenRepository.deleteAll();
+    }
+
+    @Test
+    void revokedTokenIsRejectedUntilItExpires() {
+        service.revoke("local", expiresAt());
+        assertTrue(service.isRevoked("local"));
+        assertFalse(service.isRevoked("not-revoked"));
+
+        // 已過期的 token 不需記錄
+        service.revoke("expired", Instant.now().minusSeconds(1));
+        assertEquals(1, revokedTokenRepository.count());
+    }
+
+    @Test
+    void syncAddsOtherNodesRevocations() {
+        insertFromOtherNode("other-node");
+        assertFalse(service.isRevoked("other-node"));
+
+        service.sync();
+        assertTrue(service.isRevoked("other-node"));
+    }
+
+    @Test
+    void rebuildPrunesExpiredAndKeepsActive() {
+        service.revoke("active", expiresAt());
+        revokedTokenRepository.insertIgnore("expired", LocalDateTime.now().minusMinutes(1),
+                LocalDateTime.now().minusHours(1));
+
+        Object before = ReflectionTestUtils.getField(service, "filter");
+        service.rebuild();
+
+        assertNotSame(before, ReflectionTestUtils.getField(service, "filter"));
+        assertTrue(service.isRevoked("active"));
+        assertEquals(1, revokedTokenRepository.count());
+    }
+
+    @Test
+    void revocationsWrittenWhileRebuildingAreInNewFilter() {
+        service.revoke("before-rebuild", expiresAt());
+
+        // 讀取第一頁之後，其他節點與本節點各撤銷一個 token
+        AtomicBoolean written = new AtomicBoolean();
+        doAnswer(invocation -> {
+            Object page = revokedTokenRepository.findActiveAfterId(invocation.getArgument(0),
+                    invocation.getArgument(1), invocation.getArgument(2));
+            if (written.compareAndSet(false, true)) {
+                insertFromOtherNode("other-node");
+                service.revoke("local", expiresAt());
+            }
+            return page;
+        }).when(repository).findActiveAfterId(any(), any(), any());
+
+        service.rebuild();
+
+        assertTrue(written.get());
+        assertTrue(service.isRevoked("before-rebuild"));
+        assertTrue(service.isRevoked("other-node"));
+        assertTrue(service.isRevoked("local"));
+    }
+
+    @Test
+    void revocationCommittedAfterRebuildIsInNewFilter() throws Exception {
+        // 交易中撤銷：紀錄尚未提交，重建讀不到
+        doReturn(1).when(repository).insertIgnore(anyString(), any(), any());
+        TransactionSynchronizationManager.initSynchronization();
+        service.revoke("in-transaction", expiresAt());
+
+        // 提交前另一個執行緒完成重建，替換掉已寫入該 jti 的 filter
+        CompletableFuture.runAsync(service::rebuild).get(30, TimeUnit.SECONDS);
+        assertFalse(service.isRevoked("in-transaction"));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        revokedTokenRepository.insertIgnore("in-transaction", LocalDateTime.now().plusHours(1), LocalDateTime.now());
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        assertTrue(service.isRevoked("in-transaction"));
+    }
+
+    private void insertFromOtherNode(String jti) {
+        revokedTokenRepository.insertIgnore(jti, LocalDateTime.now().plusHours(1), LocalDateTime.now());
+    }
+
+    private static Instant expiresAt() {
+        return Instant.now().plus(1, ChronoUnit.HOURS);
+    }
+}
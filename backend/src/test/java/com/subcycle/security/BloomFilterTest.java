@@ -0,0 +1,65 @@
+package com.subcycle.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bloom filter 測試：加入的值一定命中，未加入的值誤判率接近設定值
+ */
+class BloomFilterTest {
+
+    private static final int ENTRIES = 1_000_000;
+
+    @Test
+    void sizingMatchesDocumentedFormula() {
+        BloomFilter filter = new BloomFilter(ENTRIES, 0.01);
+
+        // 每筆約 9.6 位元，100 萬筆約 1.2 MB，k = 7
+        assertEquals(9_585_088, filter.bitSize());
+        assertEquals(7, filter.hashFunctions());
+        assertEquals(1_198_136, filter.sizeInBytes());
+        assertEquals(ENTRIES, filter.expectedInsertions());
+    }
+
+    @Test
+    void noFalseNegativesAndFalsePositiveRateNearConfigured() {
+        BloomFilter filter = new BloomFilter(ENTRIES, 0.01);
+        for (int i = 0; i < ENTRIES; i++) {
+            filter.put(jti("revoked", i));
+        }
+
+        for (int i = 0; i < ENTRIES; i++) {
+            if (!filter.mightContain(jti("revoked", i))) {
+                throw new AssertionError("false negative for " + jti("revoked", i));
+            }
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < ENTRIES; i++) {
+            if (filter.mightContain(jti("active", i))) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / ENTRIES;
+        assertTrue(rate > 0.007 && rate < 0.013, "false positive rate " + rate);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(0, 0.01);
+        assertFalse(filter.mightContain(jti("revoked", 1)));
+
+        filter.put(jti("revoked", 1));
+        assertTrue(filter.mightContain(jti("revoked", 1)));
+    }
+
+    /**
+     * 與 JWT 的 jti 相同格式的 UUID 字串
+     */
+    private static String jti(String prefix, int i) {
+        return String.format("%08x-0000-4000-8000-%012x", prefix.hashCode(), i);
+    }
+}
@@ -0,0 +1,178 @@
+package com.subcycle.service;
+
+import com.subcycle.dto.CalendarOccurrences;
+import com.subcycle.entity.BillingCycle;
+import com.subcycle.entity.Category;
+import com.subcycle.entity.ExchangeRate;
+import com.subcycle.entity.Subscription;
+import com.subcycle.entity.User;
+import com.subcycle.repository.CategoryRepository;
+import com.subcycle.repository.ExchangeRateRepository;
+import com.subcycle.repository.SubscriptionRepository;
+import com.subcycle.repository.UserRepository;
+import com.subcycle.support.EmbeddedMariaDb;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 行事曆扣款事件測試：對嵌入式 MariaDB 查詢區間內的訂閱，確認區間上限、依日期分組與跨幣別合計
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({CalendarService.class, ExchangeRateService.class, DashboardStatisticsCache.class})
+class CalendarServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2030, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2030, 1, 31);
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        EmbeddedMariaDb.register(registry, "calendar_test");
+    }
+
+    @Autowired
+    private CalendarService calendarService;
+
+    @Autowired
+    private ExchangeRateService exchangeRateService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
+    @Autowired
+    private ExchangeRateRepository exchangeRateRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("calendar-" + UUID.randomUUID() + "@x.test");
+        user.setPassword("x");
+        user.setName("calendar");
+        user.setCurrency("TWD");
+        user = userRepository.save(user);
+
+        exchangeRateRepository.deleteAll();
+        exchangeRateRepository.save(new ExchangeRate(null, "USD", new BigDecimal("30"), null));
+        exchangeRateService.refresh();
+    }
+
+    @Test
+    void rangeIsCappedAt366Days() {
+        calendarService.getOccurrences(user, FROM, FROM.plusDays(CalendarService.MAX_RANGE_DAYS - 1));
+
+        ResponseStatusException tooLong = assertThrows(ResponseStatusException.class,
+                () -> calendarService.getOccurrences(user, FROM, FROM.plusDays(CalendarService.MAX_RANGE_DAYS)));
+        assertEquals(HttpStatus.BAD_REQUEST, tooLong.getStatusCode());
+
+        ResponseStatusException reversed = assertThrows(ResponseStatusException.class,
+                () -> calendarService.getOccurrences(user, FROM, FROM.minusDays(1)));
+        assertEquals(HttpStatus.BAD_REQUEST, reversed.getStatusCode());
+    }
+
+    @Test
+    void groupsByDayWithConvertedTotals() {
+        Category category = new Category();
+        category.setUser(user);
+        category.setName("影音");
+        category.setColor("#ff0000");
+        category = categoryRepository.save(category);
+
+        Subscription monthly = subscription("monthly", BillingCycle.MONTHLY, "100", "TWD", LocalDate.of(2030, 1, 15));
+        monthly.setCategory(category);
+        subscriptionRepository.save(monthly);
+        Subscription weekly = subscriptionRepository.save(
+                subscription("weekly", BillingCycle.WEEKLY, "2.50", "USD", FROM));
+        // 到期日即為區間起始日，仍計入當天的扣款
+        Subscription yearly = subscription("yearly", BillingCycle.YEARLY, "1000", "TWD", FROM);
+        yearly.setEndDate(FROM);
+        subscriptionRepository.save(yearly);
+
+        CalendarOccurrences result = calendarService.getOccurrences(user, FROM, TO);
+
+        assertEquals("TWD", result.getCurrency());
+        assertEquals(7, result.getPaymentCount());
+        // 每週 5 次 × 2.50 USD（75 TWD）+ 100 + 1000
+        assertEquals(0, new BigDecimal("1475").compareTo(result.getTotal()));
+
+        List<CalendarOccurrences.DayOccurrences> days = result.getDays();
+        assertEquals(List.of("2030-01-01", "2030-01-08", "2030-01-15", "2030-01-22", "2030-01-29"),
+                days.stream().map(CalendarOccurrences.DayOccurrences::getDate).toList());
+        assertDay(days.get(0), "1075", weekly.getId(), yearly.getId());
+        assertDay(days.get(1), "75", weekly.getId());
+        // 同一天依訂閱 ID 順序
+        assertDay(days.get(2), "175", monthly.getId(), weekly.getId());
+
+        // 明細保留原幣別金額與分類顏色
+        CalendarOccurrences.Charge usdCharge = days.get(0).getCharges().get(0);
+        assertEquals("USD", usdCharge.getCurrency());
+        assertEquals(0, new BigDecimal("2.50").compareTo(usdCharge.getAmount()));
+        CalendarOccurrences.Charge categorized = days.get(2).getCharges().get(0);
+        assertEquals(category.getId(), categorized.getCategoryId());
+        assertEquals("#ff0000", categorized.getCategoryColor());
+    }
+
+    @Test
+    void queryExcludesSubscriptionsOutsideRange() {
+        Subscription inside = subscriptionRepository.save(
+                subscription("inside", BillingCycle.MONTHLY, "10", "TWD", LocalDate.of(2030, 1, 10)));
+
+        Subscription ended = subscription("ended", BillingCycle.MONTHLY, "10", "TWD", LocalDate.of(2029, 12, 10));
+        ended.setEndDate(FROM.minusDays(1));
+        subscriptionRepository.save(ended);
+
+        Subscription notStarted = subscription("not-started", BillingCycle.MONTHLY, "10", "TWD", TO.plusDays(1));
+        notStarted.setStartDate(TO.plusDays(1));
+        subscriptionRepository.save(notStarted);
+
+        subscriptionRepository.save(subscription("no-date", BillingCycle.MONTHLY, "10", "TWD", null));
+
+        List<Subscription> found = subscriptionRepository.findActiveInRangeWithCategory(user, FROM, TO);
+        assertEquals(List.of(inside.getId()), found.stream().map(Subscription::getId).toList());
+
+        CalendarOccurrences result = calendarService.getOccurrences(user, FROM, TO);
+        assertEquals(1, result.getPaymentCount());
+        assertEquals("2030-01-10", result.getDays().get(0).getDate());
+    }
+
+    private static void assertDay(CalendarOccurrences.DayOccurrences day, String total, Long... subscriptionIds) {
+        assertEquals(0, new BigDecimal(total).compareTo(day.getTotal()), () -> day.getDate() + " total");
+        assertEquals(List.of(subscriptionIds),
+                day.getCharges().stream().map(CalendarOccurrences.Charge::getSubscriptionId).toList());
+    }
+
+    private Subscription subscription(String name, BillingCycle cycle, String price, String currency,
+                                      LocalDate nextPaymentDate) {
+        Subscription sub = new Subscription();
+        sub.setUser(user);
+        sub.setName(name);
+        sub.setBillingCycle(cycle);
+        sub.setPrice(new BigDecimal(price));
+        sub.setCurrency(currency);
+        sub.setNextPaymentDate(nextPaymentDate);
+        return sub;
+    }
+}
@@ -0,0 +1,106 @@
+package com.subcycle.service;
+
+import com.subcycle.dto.DashboardStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 儀表板統計快取的失效測試：在失效前開始計算、失效後才寫入的舊資料不應留在快取中
+ */
+class DashboardStatisticsCacheTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 15);
+
+    private DashboardStatisticsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new DashboardStatisticsCache();
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void putStartedBeforeInvalidationIsDropped() {
+        long generation = cache.generation();
+        cache.invalidate(1L);
+
+        assertFalse(cache.put(1L, TODAY, new DashboardStatistics(), generation));
+        assertNull(cache.get(1L, TODAY));
+
+        // 失效之後才開始的計算照常寫入
+        DashboardStatistics fresh = new DashboardStatistics();
+        assertTrue(cache.put(1L, TODAY, fresh, cache.generation()));
+        assertSame(fresh, cache.get(1L, TODAY));
+    }
+
+    @Test
+    void stalePutAfterCommitIsDropped() {
+        cache.put(1L, TODAY, new DashboardStatistics(), cache.generation());
+
+        // 交易中修改訂閱：失效延到提交後
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidate(1L);
+
+        // 並行的請求在提交前讀到舊資料，提交後才寫入
+        long readerGeneration = cache.generation();
+        DashboardStatistics stale = new DashboardStatistics();
+
+        commit();
+        assertNull(cache.get(1L, TODAY));
+
+        assertFalse(cache.put(1L, TODAY, stale, readerGeneration));
+        assertNull(cache.get(1L, TODAY));
+    }
+
+    @Test
+    void invalidationOnlyAffectsThatUser() {
+        long generation = cache.generation();
+        cache.invalidate(1L);
+
+        assertTrue(cache.put(2L, TODAY, new DashboardStatistics(), generation));
+        assertNotNull(cache.get(2L, TODAY));
+    }
+
+    @Test
+    void invalidateAllDropsEarlierPutsForEveryUser() {
+        long before = cache.generation();
+        cache.invalidate(1L);
+        cache.invalidateAll();
+
+        assertFalse(cache.put(1L, TODAY, new DashboardStatistics(), before));
+        assertFalse(cache.put(2L, TODAY, new DashboardStatistics(), before));
+
+        long after = cache.generation();
+        assertTrue(cache.put(1L, TODAY, new DashboardStatistics(), after));
+        cache.invalidateAll(List.of(1L, 3L));
+        assertNull(cache.get(1L, TODAY));
+        assertFalse(cache.put(3L, TODAY, new DashboardStatistics(), after));
+    }
+
+    private static void commit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+    }
+}
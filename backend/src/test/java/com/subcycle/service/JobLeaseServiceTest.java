@@ -0,0 +1,200 @@
+package com.subcycle.service;
+
+import com.subcycle.entity.JobLock;
+import com.subcycle.repository.JobLockRepository;
+import com.subcycle.support.EmbeddedMariaDb;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 排程租約測試：以兩個 JobLeaseService 模擬兩個節點，對嵌入式 MariaDB 的 job_lock 執行
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JobLeaseServiceTest {
+
+    private static final String JOB = "lease-test";
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        EmbeddedMariaDb.register(registry, "job_lease_test");
+    }
+
+    @Autowired
+    private JobLockRepository jobLockRepository;
+
+    private final List<JobLeaseService> nodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(JobLeaseService::shutdown);
+        jobLockRepository.deleteAll();
+    }
+
+    @Test
+    void completedRunIsNotRepeated() {
+        JobLeaseService nodeA = node(60_000, 10_000);
+        JobLeaseService nodeB = node(60_000, 10_000);
+        AtomicInteger runs = new AtomicInteger();
+
+        assertTrue(nodeA.runExclusive(JOB, "2025-01-01", runs::incrementAndGet));
+        assertFalse(nodeA.runExclusive(JOB, "2025-01-01", runs::incrementAndGet));
+        assertFalse(nodeB.runExclusive(JOB, "2025-01-01", runs::incrementAndGet));
+        assertEquals(1, runs.get());
+
+        JobLock lock = lock();
+        assertEquals("2025-01-01", lock.getCompletedKey());
+        assertNull(lock.getOwner());
+
+        // 下一個批次照常執行
+        assertTrue(nodeB.runExclusive(JOB, "2025-01-02", runs::incrementAndGet));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void heldLeaseExcludesOtherNodes() throws Exception {
+        JobLeaseService nodeA = node(60_000, 10_000);
+        JobLeaseService nodeB = node(60_000, 10_000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> nodeA.runExclusive(JOB, "2025-01-01", () -> {
+            started.countDown();
+            await(release);
+        }));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        AtomicInteger runs = new AtomicInteger();
+        assertFalse(nodeB.runExclusive(JOB, "2025-01-01", runs::incrementAndGet));
+
+        release.countDown();
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void failedRunIsReleasedWithoutCompleting() {
+        JobLeaseService nodeA = node(60_000, 10_000);
+        JobLeaseService nodeB = node(60_000, 10_000);
+
+        assertThrows(IllegalStateException.class, () -> nodeA.runExclusive(JOB, "2025-01-01", () -> {
+            throw new IllegalStateException("partition failed");
+        }));
+
+        JobLock lock = lock();
+        assertNull(lock.getOwner());
+        assertNull(lock.getLockedUntil());
+        assertNotEquals("2025-01-01", lock.getCompletedKey());
+
+        // 其他節點可立即重新執行
+        AtomicInteger runs = new AtomicInteger();
+        assertTrue(nodeB.runExclusive(JOB, "2025-01-01", runs::incrementAndGet));
+        assertEquals(1, runs.get());
+        assertEquals("2025-01-01", lock().getCompletedKey());
+    }
+
+    @Test
+    void failedRunIsRetriedByRecovery() {
+        JobLeaseService node = node(60_000, 10_000);
+        AtomicInteger attempts = new AtomicInteger();
+        Runnable job = () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("partition failed");
+            }
+        };
+
+        assertThrows(IllegalStateException.class, () -> node.runExclusive(JOB, "2025-01-01", job));
+        node.recoverExpiredLeases();
+
+        assertEquals(2, attempts.get());
+        assertEquals("2025-01-01", lock().getCompletedKey());
+
+        // 已完成的批次不再重試
+        node.recoverExpiredLeases();
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverAndOriginalJobStops() throws Exception {
+        // 節點 A 的心跳晚於租約到期（模擬長時間停頓），租約到期後由節點 B 接手
+        JobLeaseService nodeA = node(300, 1_500);
+        JobLeaseService nodeB = node(60_000, 10_000);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger chunks = new AtomicInteger();
+
+        CompletableFuture<Boolean> original = CompletableFuture.supplyAsync(() -> nodeA.runExclusive(JOB, "2025-01-01", () -> {
+            started.countDown();
+            while (true) {
+                nodeA.checkLease(JOB);
+                chunks.incrementAndGet();
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        AtomicInteger runs = new AtomicInteger();
+        assertFalse(nodeB.runExclusive(JOB, "2025-01-01", runs::incrementAndGet));
+        Thread.sleep(600);
+        assertTrue(nodeB.runExclusive(JOB, "2025-01-01", runs::incrementAndGet));
+        assertEquals(1, runs.get());
+
+        ExecutionException stopped = assertThrows(ExecutionException.class, () -> original.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(JobLeaseService.LeaseLostException.class, stopped.getCause());
+        assertTrue(chunks.get() > 0);
+
+        // 節點 A 停止後不會覆寫節點 B 的完成紀錄
+        JobLock lock = lock();
+        assertEquals("2025-01-01", lock.getCompletedKey());
+        assertNull(lock.getOwner());
+    }
+
+    private JobLeaseService node(long leaseMillis, long heartbeatMillis) {
+        JobLeaseService node = new JobLeaseService();
+        ReflectionTestUtils.setField(node, "jobLockRepository", jobLockRepository);
+        ReflectionTestUtils.setField(node, "leaseMillis", leaseMillis);
+        ReflectionTestUtils.setField(node, "heartbeatMillis", heartbeatMillis);
+        nodes.add(node);
+        return node;
+    }
+
+    private JobLock lock() {
+        return jobLockRepository.findById(JOB).orElseThrow();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
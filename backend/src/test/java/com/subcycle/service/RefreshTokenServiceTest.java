@@ -0,0 +1,142 @@
+package com.subcycle.service;
+
+import com.subcycle.entity.User;
+import com.subcycle.repository.UserRepository;
+import com.subcycle.security.JwtUtil;
+import com.subcycle.support.EmbeddedMariaDb;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Refresh token 輪換測試：對嵌入式 MariaDB 的 refresh_tokens 執行
+ * 確認輪換沿用 session 的過期時間、寬限時間內的重複使用只拒絕，超過寬限時間則撤銷 session 與其 access token
+ */
+@SpringBootTest(properties = {
+        "email.outbox.enabled=false",
+        "reminders.cron=-",
+        "auth.refresh-token.reuse-grace-seconds=" + RefreshTokenServiceTest.GRACE_SECONDS
+})
+@AutoConfigureMockMvc
+class RefreshTokenServiceTest {
+
+    static final int GRACE_SECONDS = 10;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        EmbeddedMariaDb.register(registry, "refresh_token_test");
+    }
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("refresh-" + UUID.randomUUID() + "@x.test");
+        user.setPassword("x");
+        user.setName("refresh");
+        user.setIsActive(true);
+        user = userRepository.save(user);
+    }
+
+    @Test
+    void rotationKeepsSessionExpiry() {
+        RefreshTokenService.IssuedToken first = refreshTokenService.createRefreshToken(user);
+        RefreshTokenService.IssuedToken second = refreshTokenService.rotateRefreshToken(first.refreshToken());
+        RefreshTokenService.IssuedToken third = refreshTokenService.rotateRefreshToken(second.refreshToken());
+
+        LocalDateTime expiresAt = first.session().expiresAt();
+        assertEquals(expiresAt, second.session().expiresAt());
+        assertEquals(expiresAt, third.session().expiresAt());
+        assertEquals(first.session().sessionId(), third.session().sessionId());
+
+        List<Timestamp> stored = jdbcTemplate.queryForList(
+                "SELECT DISTINCT expires_at FROM refresh_tokens WHERE session_id = ?", Timestamp.class,
+                first.session().sessionId());
+        assertEquals(1, stored.size(), "expires_at of every token in the session");
+    }
+
+    @Test
+    void reuseWithinGraceIsOnlyRejected() throws Exception {
+        RefreshTokenService.IssuedToken first = refreshTokenService.createRefreshToken(user);
+        String accessToken = accessToken(first);
+        RefreshTokenService.IssuedToken second = refreshTokenService.rotateRefreshToken(first.refreshToken());
+
+        ResponseStatusException error = assertThrows(ResponseStatusException.class,
+                () -> refreshTokenService.rotateRefreshToken(first.refreshToken()));
+        assertEquals(HttpStatus.UNAUTHORIZED, error.getStatusCode());
+        assertEquals("Refresh Token 已更新", error.getReason());
+
+        // 並行刷新的另一個請求不影響 session
+        refreshTokenService.rotateRefreshToken(second.refreshToken());
+        mockMvc.perform(get("/api/user/profile").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void reuseAfterGraceRevokesSessionAndAccessTokens() throws Exception {
+        RefreshTokenService.IssuedToken first = refreshTokenService.createRefreshToken(user);
+        String accessToken = accessToken(first);
+        RefreshTokenService.IssuedToken second = refreshTokenService.rotateRefreshToken(first.refreshToken());
+        String rotatedAccessToken = accessToken(second);
+        RefreshTokenService.IssuedToken otherDevice = refreshTokenService.createRefreshToken(user);
+
+        jdbcTemplate.update("UPDATE refresh_tokens SET revoked_at = ? WHERE session_id = ? AND revoked = TRUE",
+                Timestamp.valueOf(LocalDateTime.now().minusSeconds(GRACE_SECONDS + 5)), first.session().sessionId());
+
+        ResponseStatusException error = assertThrows(ResponseStatusException.class,
+                () -> refreshTokenService.rotateRefreshToken(first.refreshToken()));
+        assertEquals("Refresh Token 已被撤銷", error.getReason());
+
+        // 整個 session 被撤銷：最新的 refresh token 與該 session 簽發的 access token 都失效
+        assertThrows(ResponseStatusException.class, () -> refreshTokenService.rotateRefreshToken(second.refreshToken()));
+        mockMvc.perform(get("/api/user/profile").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/user/profile").header("Authorization", "Bearer " + rotatedAccessToken))
+                .andExpect(status().isUnauthorized());
+
+        // 其他裝置的 session 不受影響
+        mockMvc.perform(get("/api/user/profile").header("Authorization", "Bearer " + accessToken(otherDevice)))
+                .andExpect(status().isOk());
+        refreshTokenService.rotateRefreshToken(otherDevice.refreshToken());
+    }
+
+    private String accessToken(RefreshTokenService.IssuedToken issued) {
+        RefreshTokenCache.Entry session = issued.session();
+        return jwtUtil.generateToken(session.userId(), session.email(), session.role(), session.tokenVersion(),
+                session.sessionId());
+    }
+}
@@ -0,0 +1,139 @@
+package com.subcycle.service;
+
+import com.subcycle.entity.EmailOutbox;
+import com.subcycle.entity.Subscription;
+import com.subcycle.entity.User;
+import com.subcycle.repository.EmailOutboxRepository;
+import com.subcycle.repository.SubscriptionRepository;
+import com.subcycle.repository.UserRepository;
+import com.subcycle.support.EmbeddedMariaDb;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 提醒排程的查詢數回歸測試
+ * 以 Hibernate 統計確認提醒流程只以投影查詢候選資料，不載入 User、Subscription 實體；
+ * SQL 數量為每個分區固定的查詢加上每封郵件一筆 email_outbox 寫入，不隨訂閱數增加（沒有 N+1）。
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "reminders.cron=-",
+        "email.outbox.enabled=false",
+        "jobs.partitions=" + SubscriptionNotificationServiceTest.PARTITIONS,
+        // 避免背景排程的查詢計入統計
+        "security.revocation.sync-interval-ms=3600000",
+        "security.token-version.refresh-interval-ms=3600000",
+        "jobs.lease.recovery-interval-ms=3600000"
+})
+class SubscriptionNotificationServiceTest {
+
+    static final int PARTITIONS = 4;
+
+    /**
+     * 租約：ensureExists、tryAcquire、complete
+     */
+    private static final int LEASE_STATEMENTS = 3;
+
+    /**
+     * 每個有提醒的分區：findDueReminders、markReminderSent
+     */
+    private static final int PARTITION_STATEMENTS = 2;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        EmbeddedMariaDb.register(registry, "notification_test");
+    }
+
+    @Autowired
+    private SubscriptionNotificationService notificationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void remindersUseProjectionAndOneInsertPerEmail() {
+        LocalDate today = LocalDate.now();
+        int expectedEmails = 0;
+        // 每個分區兩位用戶：一位合併提醒（一封摘要），一位逐筆提醒（每筆一封）
+        for (int i = 0; i < PARTITIONS * 2; i++) {
+            boolean digest = i % 2 == 0;
+            User user = user("reminder" + i + "@x.test", digest);
+            for (int k = 0; k < 3; k++) {
+                subscription(user, "due-" + k, today.plusDays(2 + k), true);
+            }
+            // 尚未到提醒日、關閉通知的訂閱不應被讀取
+            subscription(user, "later", today.plusDays(20), true);
+            subscription(user, "muted", today.plusDays(2), false);
+            expectedEmails += digest ? 1 : 3;
+        }
+
+        statistics.clear();
+        notificationService.sendUpcomingPaymentNotifications();
+
+        assertEquals(0, statistics.getEntityStatistics(User.class.getName()).getLoadCount(), "User loads");
+        assertEquals(0, statistics.getEntityStatistics(User.class.getName()).getFetchCount(), "User fetches");
+        assertEquals(0, statistics.getEntityStatistics(Subscription.class.getName()).getLoadCount(), "Subscription loads");
+        assertEquals(0, statistics.getEntityStatistics(Subscription.class.getName()).getFetchCount(), "Subscription fetches");
+        assertEquals(0, statistics.getEntityLoadCount(), "entity loads");
+        assertEquals(0, statistics.getCollectionFetchCount(), "collection fetches");
+
+        assertEquals(expectedEmails, statistics.getEntityStatistics(EmailOutbox.class.getName()).getInsertCount());
+        // 租約 + fillMissingRemindOn + 每個分區固定的查詢 + 每封郵件一筆寫入
+        assertEquals(LEASE_STATEMENTS + 1 + PARTITIONS * PARTITION_STATEMENTS + expectedEmails,
+                statistics.getPrepareStatementCount(), "SQL statements");
+
+        assertEquals(expectedEmails, emailOutboxRepository.count());
+        assertTrue(subscriptionRepository.findAll().stream()
+                .filter(sub -> sub.getName().startsWith("due-"))
+                .allMatch(Subscription::getReminderSent));
+    }
+
+    private User user(String email, boolean digest) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("x");
+        user.setName(email);
+        user.setNotificationDays(7);
+        user.setReminderDigest(digest);
+        return userRepository.save(user);
+    }
+
+    private void subscription(User user, String name, LocalDate nextPaymentDate, boolean notificationEnabled) {
+        Subscription sub = new Subscription();
+        sub.setUser(user);
+        sub.setName(name);
+        sub.setPrice(new BigDecimal("9.99"));
+        sub.setNextPaymentDate(nextPaymentDate);
+        sub.setNotificationEnabled(notificationEnabled);
+        subscriptionRepository.save(sub);
+    }
+}
@@ -0,0 +1,55 @@
+package com.subcycle.support;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfiguration;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+/**
+ * 測試用的嵌入式 MariaDB
+ * 儲存庫大量使用 MySQL 原生 SQL，需以真正的 MySQL 相容資料庫測試；
+ * 整個測試 JVM 共用一個執行個體（第一次使用時啟動），每個測試類別使用各自的資料庫。
+ */
+public final class EmbeddedMariaDb {
+
+    private static DB db;
+    private static DBConfiguration config;
+
+    private EmbeddedMariaDb() {
+    }
+
+    /**
+     * 建立資料庫並將 spring.datasource 指向它，資料表由 Hibernate 依實體建立
+     */
+    public static void register(DynamicPropertyRegistry registry, String database) {
+        int port = start();
+        // 資料庫由連線參數建立，不依賴 mariadb 命令列用戶端
+        registry.add("spring.datasource.url", () -> "jdbc:mysql://localhost:" + port + "/" + database
+                + "?createDatabaseIfNotExist=true&useSSL=false&allowPublicKeyRetrieval=true&characterEncoding=utf8");
+        registry.add("spring.datasource.username", () -> "root");
+        registry.add("spring.datasource.password", () -> "");
+        // 資料庫隨 JVM 結束由 mariaDB4j 刪除，不在關閉時 drop（此時資料庫可能已先停止）
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create");
+        registry.add("spring.jpa.show-sql", () -> "false");
+    }
+
+    private static synchronized int start() {
+        try {
+            if (db == null) {
+                DBConfigurationBuilder builder = DBConfigurationBuilder.newBuilder();
+                builder.setPort(0);
+                builder.addArg("--character-set-server=utf8mb4");
+                if ("root".equals(System.getProperty("user.name"))) {
+                    // mysqld 拒絕以 root 身分執行，除非明確指定
+                    builder.addArg("--user=root");
+                }
+                config = builder.build();
+                db = DB.newEmbeddedDB(config);
+                db.start();
+            }
+            return config.getPort();
+        } catch (Exception e) {
+            throw new IllegalStateException("無法啟動嵌入式 MariaDB", e);
+        }
+    }
+}
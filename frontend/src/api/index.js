@@ -68,6 +68,7 @@ export const subscriptionAPI = {
   update: (id, payload) => api.put(`/subscriptions/${id}`, payload),
   remove: (id) => api.delete(`/subscriptions/${id}`),
   rollover: () => api.post('/subscriptions/rollover'),
+  getOccurrences: (from, to) => api.get('/subscriptions/occurrences', { params: { from, to } }),
   updateNotifications: (enabled) => api.put('/subscriptions/notifications', { enabled })
 }
 